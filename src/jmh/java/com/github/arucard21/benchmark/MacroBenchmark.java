@@ -0,0 +1,201 @@
+package com.github.arucard21.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.arucard21.benchmark.objects.CorpusConfiguration;
+import com.github.arucard21.benchmark.objects.MacroBenchmarkReport;
+import com.github.arucard21.benchmark.objects.PhaseMeasurement;
+import com.github.arucard21.dataset_discovery.DatasetDiscovery;
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.dataset_domain_terms.DatasetDomainTerms;
+import com.github.arucard21.dataset_domain_terms.TermDictionary;
+import com.github.arucard21.evaluation.Experiments;
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Runs the full pipeline on a synthetic corpus and records how long each phase takes into a JSON report.
+ *
+ * Each phase also records its throughput, the peak heap usage while it ran and the disk usage of the output directory after it completed.
+ * The telemetry of each stage within those phases is added to the report as well.
+ * The output directory is removed before the run, so every phase does all of its work, unless keepOutput=true is given.
+ *
+ * The arguments are key=value pairs: corpus, output and report for the paths, keepOutput, and the settings of SyntheticCorpus
+ * (datasets, domainDatasets, tables, columns, rows, vocabularySize, zipfSkew, domainOverlap, seed).
+ */
+public class MacroBenchmark {
+	public static final String PHASE_DATASET_DOMAIN_TERMS = "dataset-domain-terms";
+	public static final String PHASE_TERM_INDEX_AND_MATCHING = "term-index-and-matching";
+	public static final String PHASE_DATASET_DISCOVERY = "dataset-discovery";
+
+	private final CorpusConfiguration corpus;
+	private final Path corpusDirectory;
+	private final Path outputDirectory;
+	private final List<PhaseMeasurement> phases = new ArrayList<>();
+	private final List<StageTelemetry> stages = Collections.synchronizedList(new ArrayList<>());
+	private int firstStageOfPhase;
+
+	public MacroBenchmark(CorpusConfiguration corpus, Path corpusDirectory, Path outputDirectory) {
+		this.corpus = corpus;
+		this.corpusDirectory = corpusDirectory;
+		this.outputDirectory = outputDirectory;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for(String arg : args) {
+			String[] option = arg.split("=", 2);
+			if(option.length != 2) {
+				throw new IllegalArgumentException("Each argument must be provided as key=value, but was " + arg);
+			}
+			options.put(option[0], option[1]);
+		}
+		Path corpusDirectory = Paths.get(options.getOrDefault("corpus", "benchmark-corpus"));
+		Path outputDirectory = Paths.get(options.getOrDefault("output", "benchmark-output"));
+		Path reportPath = Paths.get(options.getOrDefault("report", "benchmark-report.json"));
+		SyntheticCorpus generator = new SyntheticCorpus();
+		CorpusConfiguration corpus = generator
+				.datasets(Integer.parseInt(options.getOrDefault("datasets", String.valueOf(generator.getDatasets()))))
+				.domainDatasets(Integer.parseInt(options.getOrDefault("domainDatasets", String.valueOf(generator.getDomainDatasets()))))
+				.tables(Integer.parseInt(options.getOrDefault("tables", String.valueOf(generator.getTables()))))
+				.columns(Integer.parseInt(options.getOrDefault("columns", String.valueOf(generator.getColumns()))))
+				.rows(Integer.parseInt(options.getOrDefault("rows", String.valueOf(generator.getRows()))))
+				.vocabularySize(Integer.parseInt(options.getOrDefault("vocabularySize", String.valueOf(generator.getVocabularySize()))))
+				.zipfSkew(Double.parseDouble(options.getOrDefault("zipfSkew", String.valueOf(generator.getZipfSkew()))))
+				.domainOverlap(Double.parseDouble(options.getOrDefault("domainOverlap", String.valueOf(generator.getDomainOverlap()))))
+				.seed(Long.parseLong(options.getOrDefault("seed", String.valueOf(generator.getSeed()))))
+				.generate(corpusDirectory);
+		if(!Boolean.parseBoolean(options.getOrDefault("keepOutput", "false"))) {
+			deleteRecursively(outputDirectory);
+		}
+		MacroBenchmark benchmark = new MacroBenchmark(corpus, corpusDirectory, outputDirectory);
+		MacroBenchmarkReport report = new MacroBenchmarkReport(
+				System.getProperty("java.version"),
+				Runtime.getRuntime().availableProcessors(),
+				Runtime.getRuntime().maxMemory(),
+				corpus,
+				benchmark.run(),
+				benchmark.getStages());
+		try(Writer writer = Files.newBufferedWriter(reportPath)){
+			new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+		}
+		System.out.println("The macro benchmark report was written to " + reportPath.toString());
+	}
+
+	/**
+	 * Run all phases of the pipeline on the corpus.
+	 *
+	 * @return the measurement for each phase, in the order in which they were run.
+	 */
+	public List<PhaseMeasurement> run() throws IOException {
+		long rowsPerDataset = (long) corpus.getTables() * corpus.getRows();
+
+		startPhase();
+		long start = System.nanoTime();
+		Path datasetDomainTermsDirectory = new DatasetDomainTerms(corpusDirectory.resolve(SyntheticCorpus.DOMAIN_DIR_NAME), outputDirectory.resolve("domain-representation"))
+				.similarityAlgorithm(Experiments.JACCARD_INDEX)
+				.pruningStrategy(Experiments.TRIMMER_CONSERVATIVE)
+				.telemetrySink(stages::add)
+				.generate();
+		long wallTime = System.nanoTime() - start;
+		long domainTermCount = TermDictionary.open(datasetDomainTermsDirectory.resolveSibling(DatasetDomainTerms.DATASET_DOMAIN_DICTIONARY_FILE_NAME)).size();
+		endPhase(PHASE_DATASET_DOMAIN_TERMS, wallTime, rowsPerDataset, domainTermCount);
+
+		List<Path> inputDatasets;
+		try(Stream<Path> datasets = Files.list(corpusDirectory.resolve(SyntheticCorpus.DATASETS_DIR_NAME))){
+			inputDatasets = datasets.sorted().collect(Collectors.toList());
+		}
+		Path discoveryOutputDirectory = outputDirectory.resolve("dataset-discovery");
+		DatasetDiscovery datasetDiscovery = new DatasetDiscovery(datasetDomainTermsDirectory, discoveryOutputDirectory, inputDatasets)
+				.telemetrySink(stages::add);
+
+		startPhase();
+		start = System.nanoTime();
+		long datasetTermCount = 0;
+		for(Path inputDataset : inputDatasets) {
+			for(MatchingResult matchingResult : datasetDiscovery.calculateSimilarityToDomainRepresentations(inputDataset, List.of(datasetDomainTermsDirectory)).values()) {
+				datasetTermCount += matchingResult.getDatasetSize();
+			}
+		}
+		endPhase(PHASE_TERM_INDEX_AND_MATCHING, System.nanoTime() - start, rowsPerDataset * inputDatasets.size(), datasetTermCount);
+
+		startPhase();
+		start = System.nanoTime();
+		Set<String> datasetsFocusedOnDomain = datasetDiscovery.discoverDatasetsFocusedOnSameDomain();
+		endPhase(PHASE_DATASET_DISCOVERY, System.nanoTime() - start, 0, 0);
+
+		System.out.println(String.format("Discovered %d datasets focused on the domain, the corpus contains %d", datasetsFocusedOnDomain.size(), corpus.getDomainDatasetNames().size()));
+		return phases;
+	}
+
+	/**
+	 * The telemetry of each stage that was run, in the order in which they finished.
+	 */
+	public List<StageTelemetry> getStages() {
+		return stages;
+	}
+
+	private void startPhase() {
+		firstStageOfPhase = stages.size();
+		System.gc();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private void endPhase(String phase, long wallTimeNanos, long rows, long terms) throws IOException {
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		// Each stage resets the peak heap usage when it starts, so the peaks of the stages in this phase are included as well
+		for(StageTelemetry stage : stages.subList(firstStageOfPhase, stages.size())) {
+			peakHeap = Math.max(peakHeap, stage.getPeakHeapBytes());
+		}
+		PhaseMeasurement measurement = new PhaseMeasurement(phase, wallTimeNanos / 1_000_000, rows, terms, peakHeap, diskUsage(outputDirectory));
+		System.out.println(String.format("Phase %s took %d ms (%.0f rows/s, %.0f terms/s)", phase, measurement.getWallTimeMillis(), measurement.getRowsPerSecond(), measurement.getTermsPerSecond()));
+		phases.add(measurement);
+	}
+
+	private static long diskUsage(Path directory) throws IOException {
+		try(Stream<Path> files = Files.walk(directory)){
+			return files
+					.map(Path::toFile)
+					.filter(File::isFile)
+					.mapToLong(File::length)
+					.sum();
+		}
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		if(!path.toFile().exists()) {
+			return;
+		}
+		try(Stream<Path> paths = Files.walk(path)){
+			for(Path toDelete : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(toDelete);
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.github.arucard21.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.arucard21.benchmark.objects.CorpusConfiguration;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Generates a synthetic corpus of datasets, each of which is a directory of gzipped TSV files with a header row.
+ *
+ * Every column of a table draws its values from a vocabulary of a column type, with a Zipf distribution over that vocabulary.
+ * The datasets that focus on the domain and the domain-representative dataset use the domain column types for all columns.
+ * The other datasets use a domain column type for a column with the probability given by the domain overlap, and an unrelated column type otherwise.
+ *
+ * The corpus directory contains the domain-representative dataset in DOMAIN_DIR_NAME, the input datasets in DATASETS_DIR_NAME
+ * and the configuration, including the names of the datasets that focus on the domain, in CORPUS_FILE_NAME.
+ */
+public class SyntheticCorpus {
+	public static final String DOMAIN_DIR_NAME = "domain";
+	public static final String DATASETS_DIR_NAME = "datasets";
+	public static final String CORPUS_FILE_NAME = "corpus.json";
+	private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ba", "de", "fi", "go", "hu", "ja", "ke", "po"};
+
+	private int datasets = 20;
+	private int domainDatasets = 5;
+	private int tables = 3;
+	private int columns = 8;
+	private int rows = 10000;
+	private int vocabularySize = 50000;
+	private double zipfSkew = 1d;
+	private double domainOverlap = 0.2d;
+	private long seed = 42L;
+
+	/**
+	 * Read the configuration of a corpus that was generated before.
+	 */
+	public static CorpusConfiguration readConfiguration(Path corpusDirectory) throws IOException {
+		try(Reader reader = Files.newBufferedReader(corpusDirectory.resolve(CORPUS_FILE_NAME))){
+			return new Gson().fromJson(reader, CorpusConfiguration.class);
+		}
+	}
+
+	/**
+	 * Generate the corpus in the given directory, unless a corpus was already generated there.
+	 */
+	public CorpusConfiguration generate(Path corpusDirectory) throws IOException {
+		if(corpusDirectory.resolve(CORPUS_FILE_NAME).toFile().exists()) {
+			System.out.println(corpusDirectory.toString() + " already contains a corpus. Skipping this step.");
+			return readConfiguration(corpusDirectory);
+		}
+		double[] zipfDistribution = cumulativeZipfDistribution(vocabularySize, zipfSkew);
+		Random random = new Random(seed);
+		writeDataset(corpusDirectory.resolve(DOMAIN_DIR_NAME), true, random, zipfDistribution);
+		List<String> domainDatasetNames = new ArrayList<>();
+		for(int i = 0; i < datasets; i++) {
+			String datasetName = String.format("dataset-%04d", i);
+			boolean focusedOnDomain = i < domainDatasets;
+			if(focusedOnDomain) {
+				domainDatasetNames.add(datasetName);
+			}
+			writeDataset(corpusDirectory.resolve(DATASETS_DIR_NAME).resolve(datasetName), focusedOnDomain, random, zipfDistribution);
+		}
+		CorpusConfiguration configuration = new CorpusConfiguration(datasets, domainDatasets, tables, columns, rows, vocabularySize, zipfSkew, domainOverlap, seed, domainDatasetNames);
+		try(Writer writer = Files.newBufferedWriter(corpusDirectory.resolve(CORPUS_FILE_NAME))){
+			new GsonBuilder().setPrettyPrinting().create().toJson(configuration, writer);
+		}
+		return configuration;
+	}
+
+	private void writeDataset(Path datasetDirectory, boolean focusedOnDomain, Random random, double[] zipfDistribution) throws IOException {
+		Files.createDirectories(datasetDirectory);
+		for(int table = 0; table < tables; table++) {
+			String[] columnTypes = new String[columns];
+			for(int column = 0; column < columns; column++) {
+				boolean domainColumn = focusedOnDomain || random.nextDouble() < domainOverlap;
+				columnTypes[column] = (domainColumn ? "domain" : "other") + column;
+			}
+			Path tablePath = datasetDirectory.resolve(String.format("table-%02d.tsv.gz", table));
+			try(Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tablePath)), StandardCharsets.UTF_8))){
+				writer.write(String.join("\t", columnTypes));
+				writer.write('\n');
+				for(int row = 0; row < rows; row++) {
+					for(int column = 0; column < columns; column++) {
+						if(column > 0) {
+							writer.write('\t');
+						}
+						writer.write(word(columnTypes[column], sampleRank(zipfDistribution, random)));
+					}
+					writer.write('\n');
+				}
+			}
+		}
+	}
+
+	/**
+	 * A pronounceable word for the given rank in the vocabulary of the given column type.
+	 */
+	private static String word(String columnType, int rank) {
+		long bits = mix(columnType.hashCode() * 0x100000000L + rank);
+		StringBuilder word = new StringBuilder();
+		for(int i = 0; i < 4 + (int) ((bits >>> 60) & 3); i++) {
+			word.append(SYLLABLES[(int) (bits & 15)]);
+			bits >>>= 4;
+		}
+		// Only the syllables could collide, so the rank keeps the words of a vocabulary distinct
+		return word.append(' ').append(Integer.toString(rank, 36)).toString();
+	}
+
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	private static double[] cumulativeZipfDistribution(int vocabularySize, double skew) {
+		double[] cumulative = new double[vocabularySize];
+		double total = 0d;
+		for(int rank = 0; rank < vocabularySize; rank++) {
+			total += 1d / Math.pow(rank + 1, skew);
+			cumulative[rank] = total;
+		}
+		for(int rank = 0; rank < vocabularySize; rank++) {
+			cumulative[rank] /= total;
+		}
+		return cumulative;
+	}
+
+	private static int sampleRank(double[] cumulativeDistribution, Random random) {
+		int index = Arrays.binarySearch(cumulativeDistribution, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, cumulativeDistribution.length - 1);
+	}
+
+	public int getDatasets() {
+		return datasets;
+	}
+
+	public SyntheticCorpus datasets(int datasets) {
+		this.datasets = datasets;
+		return this;
+	}
+
+	public int getDomainDatasets() {
+		return domainDatasets;
+	}
+
+	/**
+	 * Set how many of the datasets focus on the domain.
+	 */
+	public SyntheticCorpus domainDatasets(int domainDatasets) {
+		this.domainDatasets = domainDatasets;
+		return this;
+	}
+
+	public int getTables() {
+		return tables;
+	}
+
+	public SyntheticCorpus tables(int tables) {
+		this.tables = tables;
+		return this;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public SyntheticCorpus columns(int columns) {
+		this.columns = columns;
+		return this;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public SyntheticCorpus rows(int rows) {
+		this.rows = rows;
+		return this;
+	}
+
+	public int getVocabularySize() {
+		return vocabularySize;
+	}
+
+	public SyntheticCorpus vocabularySize(int vocabularySize) {
+		this.vocabularySize = vocabularySize;
+		return this;
+	}
+
+	public double getZipfSkew() {
+		return zipfSkew;
+	}
+
+	public SyntheticCorpus zipfSkew(double zipfSkew) {
+		this.zipfSkew = zipfSkew;
+		return this;
+	}
+
+	public double getDomainOverlap() {
+		return domainOverlap;
+	}
+
+	/**
+	 * Set the probability that a column of a dataset that does not focus on the domain still draws its values from a domain column type.
+	 */
+	public SyntheticCorpus domainOverlap(double domainOverlap) {
+		if(domainOverlap < 0d || domainOverlap > 1d) {
+			throw new IllegalArgumentException("The domain overlap must be between 0 and 1, but was " + domainOverlap);
+		}
+		this.domainOverlap = domainOverlap;
+		return this;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public SyntheticCorpus seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+}
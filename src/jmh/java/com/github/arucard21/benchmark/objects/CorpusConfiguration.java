@@ -0,0 +1,60 @@
+package com.github.arucard21.benchmark.objects;
+
+import java.util.List;
+
+public class CorpusConfiguration {
+	private int datasets;
+	private int domainDatasets;
+	private int tables;
+	private int columns;
+	private int rows;
+	private int vocabularySize;
+	private double zipfSkew;
+	private double domainOverlap;
+	private long seed;
+	private List<String> domainDatasetNames;
+
+	public CorpusConfiguration(int datasets, int domainDatasets, int tables, int columns, int rows, int vocabularySize, double zipfSkew, double domainOverlap, long seed, List<String> domainDatasetNames) {
+		this.datasets = datasets;
+		this.domainDatasets = domainDatasets;
+		this.tables = tables;
+		this.columns = columns;
+		this.rows = rows;
+		this.vocabularySize = vocabularySize;
+		this.zipfSkew = zipfSkew;
+		this.domainOverlap = domainOverlap;
+		this.seed = seed;
+		this.domainDatasetNames = domainDatasetNames;
+	}
+
+	public int getDatasets() {
+		return datasets;
+	}
+	public int getDomainDatasets() {
+		return domainDatasets;
+	}
+	public int getTables() {
+		return tables;
+	}
+	public int getColumns() {
+		return columns;
+	}
+	public int getRows() {
+		return rows;
+	}
+	public int getVocabularySize() {
+		return vocabularySize;
+	}
+	public double getZipfSkew() {
+		return zipfSkew;
+	}
+	public double getDomainOverlap() {
+		return domainOverlap;
+	}
+	public long getSeed() {
+		return seed;
+	}
+	public List<String> getDomainDatasetNames() {
+		return domainDatasetNames;
+	}
+}
@@ -0,0 +1,42 @@
+package com.github.arucard21.benchmark.objects;
+
+import java.util.List;
+
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+
+public class MacroBenchmarkReport {
+	private final String javaVersion;
+	private final int availableProcessors;
+	private final long maxHeapBytes;
+	private final CorpusConfiguration corpus;
+	private final List<PhaseMeasurement> phases;
+	private final List<StageTelemetry> stages;
+
+	public MacroBenchmarkReport(String javaVersion, int availableProcessors, long maxHeapBytes, CorpusConfiguration corpus, List<PhaseMeasurement> phases, List<StageTelemetry> stages) {
+		this.javaVersion = javaVersion;
+		this.availableProcessors = availableProcessors;
+		this.maxHeapBytes = maxHeapBytes;
+		this.corpus = corpus;
+		this.phases = phases;
+		this.stages = stages;
+	}
+
+	public String getJavaVersion() {
+		return javaVersion;
+	}
+	public int getAvailableProcessors() {
+		return availableProcessors;
+	}
+	public long getMaxHeapBytes() {
+		return maxHeapBytes;
+	}
+	public CorpusConfiguration getCorpus() {
+		return corpus;
+	}
+	public List<PhaseMeasurement> getPhases() {
+		return phases;
+	}
+	public List<StageTelemetry> getStages() {
+		return stages;
+	}
+}
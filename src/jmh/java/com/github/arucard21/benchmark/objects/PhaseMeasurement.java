@@ -0,0 +1,49 @@
+package com.github.arucard21.benchmark.objects;
+
+public class PhaseMeasurement {
+	private final String phase;
+	private final long wallTimeMillis;
+	private final long rows;
+	private final long terms;
+	private final double rowsPerSecond;
+	private final double termsPerSecond;
+	private final long peakHeapBytes;
+	private final long diskUsageBytes;
+
+	public PhaseMeasurement(String phase, long wallTimeMillis, long rows, long terms, long peakHeapBytes, long diskUsageBytes) {
+		this.phase = phase;
+		this.wallTimeMillis = wallTimeMillis;
+		this.rows = rows;
+		this.terms = terms;
+		double seconds = Math.max(wallTimeMillis, 1) / 1000d;
+		this.rowsPerSecond = rows / seconds;
+		this.termsPerSecond = terms / seconds;
+		this.peakHeapBytes = peakHeapBytes;
+		this.diskUsageBytes = diskUsageBytes;
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+	public long getWallTimeMillis() {
+		return wallTimeMillis;
+	}
+	public long getRows() {
+		return rows;
+	}
+	public long getTerms() {
+		return terms;
+	}
+	public double getRowsPerSecond() {
+		return rowsPerSecond;
+	}
+	public double getTermsPerSecond() {
+		return termsPerSecond;
+	}
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+	public long getDiskUsageBytes() {
+		return diskUsageBytes;
+	}
+}
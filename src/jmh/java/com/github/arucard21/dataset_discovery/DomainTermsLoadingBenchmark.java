@@ -0,0 +1,56 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.arucard21.dataset_domain_terms.DomainTermSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures loading the dataset domain terms from the column domain JSON files with Gson.
+ *
+ * No term dictionary is written next to these files, so they are always parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DomainTermsLoadingBenchmark {
+	@Param({"10000", "100000", "1000000", "10000000", "50000000"})
+	public long termCount;
+	@Param({"1000", "100000"})
+	public int termsPerColumnDomain;
+
+	private Path workDirectory;
+	private Path datasetDomainTermsDirectory;
+	private DatasetDiscovery datasetDiscovery;
+
+	@Setup
+	public void setUp() throws IOException {
+		workDirectory = Files.createTempDirectory("domain-terms-loading-benchmark");
+		datasetDomainTermsDirectory = workDirectory.resolve("domain").resolve("dataset-domain");
+		SyntheticTerms.writeColumnDomains(0, termCount, termsPerColumnDomain, datasetDomainTermsDirectory);
+		datasetDiscovery = new DatasetDiscovery(datasetDomainTermsDirectory, workDirectory.resolve("output"), List.of());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		SyntheticTerms.deleteRecursively(workDirectory);
+	}
+
+	@Benchmark
+	public DomainTermSet loadColumnDomains() throws IOException {
+		return datasetDiscovery.loadDatasetDomainTerms(datasetDomainTermsDirectory);
+	}
+}
@@ -0,0 +1,73 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures reading the term index of a target dataset and matching it against the dataset domain terms.
+ *
+ * The dataset domain terms contain a tenth of the number of terms in the target dataset, half of which occur in the target dataset.
+ * They are loaded once before the measurements, as they are during dataset discovery.
+ * With matchedTermsLogged, the overhead of writing the matched terms and their column domains is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MatchingBenchmark {
+	@Param({"10000", "100000", "1000000", "10000000", "50000000"})
+	public long termCount;
+	@Param({DatasetDiscovery.MATCHING_IN_MEMORY, DatasetDiscovery.MATCHING_STREAMING, DatasetDiscovery.MATCHING_SORT_MERGE})
+	public String matchingStrategy;
+	@Param({"false", "true"})
+	public boolean matchedTermsLogged;
+
+	private Path workDirectory;
+	private Path termIndexPath;
+	private DatasetDiscovery datasetDiscovery;
+
+	@Setup
+	public void setUp() throws IOException {
+		workDirectory = Files.createTempDirectory("matching-benchmark");
+		Path datasetDirectory = Files.createDirectories(workDirectory.resolve("dataset"));
+		termIndexPath = datasetDirectory.resolve(DatasetDiscovery.TERM_INDEX_FILE_NAME);
+		SyntheticTerms.writeTermIndex(0, termCount, termIndexPath);
+		long domainTermCount = Math.max(1, termCount / 10);
+		Path datasetDomainTermsDirectory = workDirectory.resolve("domain").resolve("dataset-domain");
+		SyntheticTerms.writeColumnDomains(termCount - domainTermCount / 2, domainTermCount, 10000, datasetDomainTermsDirectory);
+		datasetDiscovery = new DatasetDiscovery(datasetDomainTermsDirectory, workDirectory.resolve("output"), List.of())
+				.matchingStrategy(matchingStrategy)
+				.matchedTermsLogged(matchedTermsLogged);
+		datasetDiscovery.countTargetDatasetMatchedTerms(termIndexPath);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		SyntheticTerms.deleteRecursively(workDirectory);
+	}
+
+	@Benchmark
+	public Set<String> readTermsFromIndexFile() throws IOException {
+		return datasetDiscovery.readTermsFromIndexFile(termIndexPath);
+	}
+
+	@Benchmark
+	public MatchingResult countTargetDatasetMatchedTerms() throws IOException {
+		return datasetDiscovery.countTargetDatasetMatchedTerms(termIndexPath);
+	}
+}
@@ -0,0 +1,69 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.github.arucard21.dataset_discovery.objects.DatasetSimilarity;
+import com.github.arucard21.dataset_discovery.objects.SimilarDatasetsGroup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures ranking the datasets by their similarity score and grouping them by the steepest drops in that score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RankingBenchmark {
+	@Param({"100", "10000", "1000000"})
+	public int datasetCount;
+
+	private List<DatasetSimilarity> similarityScores;
+	private List<DatasetSimilarity> sortedWithDrops;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		similarityScores = new ArrayList<>();
+		for(int i = 0; i < datasetCount; i++) {
+			similarityScores.add(new DatasetSimilarity("dataset-" + i, random.nextDouble()));
+		}
+		sortedWithDrops = sortByDescendingSimilarityScore();
+		DatasetDiscovery.calculateConsecutiveDrops(sortedWithDrops);
+	}
+
+	@Benchmark
+	public List<DatasetSimilarity> sortAndCalculateConsecutiveDrops() {
+		List<DatasetSimilarity> sortedByDescendingSimilarityScore = sortByDescendingSimilarityScore();
+		DatasetDiscovery.calculateConsecutiveDrops(sortedByDescendingSimilarityScore);
+		return sortedByDescendingSimilarityScore;
+	}
+
+	@Benchmark
+	public List<SimilarDatasetsGroup> groupDatasetsByConsecutiveDrop() {
+		return DatasetDiscovery.groupDatasetsByConsecutiveDrop(sortedWithDrops);
+	}
+
+	@Benchmark
+	public Set<DatasetSimilarity> selectSimilarDatasets() {
+		return DatasetDiscovery.selectSimilarDatasets(similarityScores);
+	}
+
+	private List<DatasetSimilarity> sortByDescendingSimilarityScore() {
+		List<DatasetSimilarity> sortedByDescendingSimilarityScore = new ArrayList<>(similarityScores);
+		Collections.sort(sortedByDescendingSimilarityScore, Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore).reversed());
+		return sortedByDescendingSimilarityScore;
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.arucard21.dataset_domain_terms.objects.ColumnDomain;
+import com.google.gson.Gson;
+
+/**
+ * Generates reproducible synthetic terms and writes them in the formats that dataset discovery reads.
+ *
+ * The term for an index is always the same and different indexes always have different terms, so overlapping
+ * term sets can be created from overlapping ranges of indexes.
+ */
+class SyntheticTerms {
+	private SyntheticTerms() {}
+
+	static String term(long index) {
+		// The SplitMix64 finalizer is a bijection, so distinct indexes result in distinct terms
+		long mixed = index + 0x9E3779B97F4A7C15L;
+		mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+		mixed = mixed ^ (mixed >>> 31);
+		return "TERM " + Long.toUnsignedString(mixed, 36).toUpperCase();
+	}
+
+	/**
+	 * Write a gzipped term index with the terms for the given range of indexes, in the tab-separated format of D4 (term identifier, term, column identifiers).
+	 */
+	static void writeTermIndex(long firstIndex, long termCount, Path termIndexPath) throws IOException {
+		try(Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(termIndexPath)), StandardCharsets.UTF_8))){
+			for(long i = 0; i < termCount; i++) {
+				writer.write(String.format("%d\t%s\t%d\n", i, term(firstIndex + i), i % 100));
+			}
+		}
+	}
+
+	/**
+	 * Write the terms for the given range of indexes as column domain JSON files, each with at most the given number of terms.
+	 */
+	static void writeColumnDomains(long firstIndex, long termCount, int termsPerFile, Path datasetDomainTermsDirectory) throws IOException {
+		Files.createDirectories(datasetDomainTermsDirectory);
+		Gson gson = new Gson();
+		int file = 0;
+		for(long start = 0; start < termCount; start += termsPerFile) {
+			List<String> terms = new ArrayList<>();
+			for(long i = start; i < Math.min(termCount, start + termsPerFile); i++) {
+				terms.add(term(firstIndex + i));
+			}
+			ColumnDomain columnDomain = new ColumnDomain();
+			columnDomain.setColumns(List.of());
+			columnDomain.setTerms(terms);
+			try(Writer writer = Files.newBufferedWriter(datasetDomainTermsDirectory.resolve(String.format("column-domain-%d.json", file++)))){
+				gson.toJson(columnDomain, writer);
+			}
+		}
+	}
+
+	static void deleteRecursively(Path path) throws IOException {
+		try(Stream<Path> paths = Files.walk(path)){
+			for(Path toDelete : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(toDelete);
+			}
+		}
+	}
+}
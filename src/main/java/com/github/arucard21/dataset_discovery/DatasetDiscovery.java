@@ -1,26 +1,57 @@
 package com.github.arucard21.dataset_discovery;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.github.arucard21.dataset_discovery.objects.DatasetSimilarity;
+import com.github.arucard21.dataset_discovery.objects.IntersectionEstimate;
 import com.github.arucard21.dataset_discovery.objects.MatchingResult;
 import com.github.arucard21.dataset_discovery.objects.SimilarDatasetsGroup;
-import com.github.arucard21.dataset_domain_terms.objects.ColumnDomain;
+import com.github.arucard21.dataset_domain_terms.BloomFilter;
+import com.github.arucard21.dataset_domain_terms.BloomFilteredDomainTermSet;
+import com.github.arucard21.dataset_domain_terms.ColumnDomains;
+import com.github.arucard21.dataset_domain_terms.DatasetDomainTerms;
+import com.github.arucard21.dataset_domain_terms.DomainTermSet;
+import com.github.arucard21.dataset_domain_terms.OffHeapDomainTermSet;
+import com.github.arucard21.dataset_domain_terms.TermDictionary;
+import com.github.arucard21.dataset_domain_terms.objects.BloomFilterStatistics;
+import com.github.arucard21.pipeline.IntermediateCodec;
+import com.github.arucard21.pipeline.IoExecutors;
+import com.github.arucard21.pipeline.StageAction;
+import com.github.arucard21.pipeline.StageMeasurement;
+import com.github.arucard21.pipeline.StageOutputs;
+import com.github.arucard21.pipeline.TelemetrySink;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
@@ -33,6 +64,7 @@ import org.opendata.db.term.TermConsumer;
 import org.opendata.db.term.TermIndexReader;
 
 public class DatasetDiscovery {
+	public static final String PIPELINE_NAME = "dataset-discovery";
 	public static final String COLUMNS_DIR_NAME = "columns";
 	public static final String COLUMNS_METADATA_FILE_NAME = "columns.tsv";
 	public static final String TERM_INDEX_FILE_NAME = "term-index.txt.gz";
@@ -40,6 +72,40 @@ public class DatasetDiscovery {
 	public static final String DATASET_DISCOVERY_SELECTED_VARIANT = "precision";
 	public static final String DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV = "all_similarity_scores.csv";
 	public static final String DATASET_DISCOVERY_OUTPUT_DATASETS_FOCUSED_ON_DOMAIN = "datasets_focused_on_domain.csv";
+	public static final String DATASET_DOMAIN_BLOOM_FILTER_FILE_NAME = "dataset-domain-terms.bloom";
+	public static final String MATCHING_RESULT_STAGE_NAME = "matching-result";
+	public static final String MATCHED_TERMS_STAGE_NAME = "matched-terms";
+	public static final String MATCHING_IN_MEMORY = "in-memory";
+	public static final String MATCHING_STREAMING = "streaming";
+	public static final String MATCHING_SORT_MERGE = "sort-merge";
+	public static final String SORTED_TERMS_STAGE_NAME = "sorted-terms";
+	public static final String SORTED_TERM_INDEX_FILE_NAME = "term-index.sorted";
+	public static final String SORTED_DATASET_DOMAIN_TERMS_FILE_NAME = "dataset-domain-terms.sorted";
+	public static final String TERM_INDEX_SKETCH_FILE_NAME = "term-index.sketch";
+	public static final String DATASET_DOMAIN_SKETCH_FILE_NAME = "dataset-domain-terms.sketch";
+	public static final String DATASET_SKETCH_SIMILARITY_SCORES_CSV_NAME = "sketch_similarity_scores.csv";
+	public static final String INVERTED_INDEX_DIR_NAME = "inverted-index";
+	public static final String DOMAIN_BITMAP_STAGE_NAME = "domain-bitmap";
+	/**
+	 * The number of standard deviations for the bounds of estimated similarity scores, which gives a 95% confidence interval.
+	 */
+	public static final double SKETCH_CONFIDENCE_Z = 1.96d;
+	public static final String DATASET_SAMPLE_SIMILARITY_SCORES_CSV_NAME = "sample_similarity_scores.csv";
+	public static final String ROW_SAMPLE_STAGE_NAME = "row-sample";
+	public static final double ROW_SAMPLE_CONFIDENCE_Z = 1.96d;
+	/**
+	 * How many times more rows are sampled when the similarity score estimated from a row sample is too uncertain.
+	 */
+	public static final int ROW_SAMPLE_REFINEMENT_FACTOR = 8;
+	/**
+	 * The number of rows that are sampled from each table to bound the similarity score for approximate top-k discovery, when neither sketches nor row samples are configured.
+	 */
+	public static final int TOP_K_ROW_SAMPLE_SIZE = 1000;
+	/**
+	 * The confidence level of the bounds that approximate top-k discovery skips input datasets with, which matches SKETCH_CONFIDENCE_Z and ROW_SAMPLE_CONFIDENCE_Z.
+	 */
+	public static final double APPROXIMATE_TOP_K_CONFIDENCE_LEVEL = 0.95d;
+	public static final String APPROXIMATE_TOP_K_STAGE_NAME = "approximate-top-k";
 	public static final OpenOption[] CREATE_AND_APPEND = new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND};
 
 	/**
@@ -47,8 +113,17 @@ public class DatasetDiscovery {
 	 *
 	 * Though this is a conceptually a single list, it is stored in separate JSON files in this directory.
 	 * Each JSON file matches the column domain that those dataset domain terms were derived from.
+	 * This can also be a consolidated file that contains all of these column domains, see ColumnDomains.
 	 */
 	private final Path datasetDomainTermsDirectory;
+	/**
+	 * The dataset domain terms, which are loaded once and then used for all input datasets.
+	 */
+	private DomainTermSet datasetDomainTerms;
+	/**
+	 * Other dataset domain terms that this dataset discovery was asked to match, mapped by their directory.
+	 */
+	private final Map<Path, DomainTermSet> otherDatasetDomainTerms = new HashMap<>();
 	/**
 	 * Path to the directory where the dataset discovery result is stored, along with any intermediate output that is generated.
 	 */
@@ -58,17 +133,110 @@ public class DatasetDiscovery {
 	 */
 	private final List<Path> inputDatasets;
 	/**
-	 * Determines whether the matched terms should be written to an output file.
-	 *
-	 * This may be resource-intensive so it should only be disabled when necessary.
+	 * Determines whether the matched terms should be written to an output file, along with the column domains they were matched with.
 	 */
 	private boolean matchedTermsLogged = false;
+	/**
+	 * The column domains of each dataset domain term, which are only loaded when the matched terms are logged.
+	 */
+	private Map<String, String> datasetDomainTermColumnDomains;
+	/**
+	 * The maximum number of input datasets that are processed at the same time.
+	 *
+	 * Each dataset is still processed by D4 with its own threads, so this should be kept low when memory is limited.
+	 */
+	private int concurrency = 1;
+	/**
+	 * Limits the number of D4 stages and matching stages that run at the same time to the concurrency.
+	 */
+	private Semaphore cpuBoundStagePermits = new Semaphore(1);
+	/**
+	 * Determines whether each input dataset is processed on its own virtual thread, instead of on a pool of as many threads as the concurrency.
+	 */
+	private boolean virtualThreadsUsed = false;
+	/**
+	 * Determines how the terms of a target dataset are matched against the dataset domain terms.
+	 *
+	 * With MATCHING_IN_MEMORY, all terms of the target dataset are loaded into memory before they are matched.
+	 * With MATCHING_STREAMING, each term is matched while the term index is read, so only the counts (and the matched terms, if they are logged) are kept in memory.
+	 * With MATCHING_SORT_MERGE, the terms of the target dataset and the dataset domain terms are sorted into files on disk, which are then read side by side.
+	 */
+	private String matchingStrategy = MATCHING_IN_MEMORY;
+	/**
+	 * The number of bytes of terms that are kept in memory while they are sorted for MATCHING_SORT_MERGE.
+	 *
+	 * This budget is shared by all sorts that run at the same time, which are those of the input datasets that are matched at the same time
+	 * and the sort of the dataset domain terms. Each of them uses an equal share, since at most as many of them run at the same time as the concurrency.
+	 */
+	private long sortMemoryBudget = 256L * 1024 * 1024;
+	/**
+	 * Determines whether the term dictionary is copied into an off-heap hash table, which allows constant-time lookups instead of a binary search.
+	 */
+	private boolean domainTermsOffHeap = false;
+	/**
+	 * The sorted dataset domain terms for MATCHING_SORT_MERGE, which are sorted once and then used for all input datasets.
+	 */
+	private Path sortedDatasetDomainTermsPath;
+	/**
+	 * The false-positive rate for the Bloom filter that is checked before each lookup in the dataset domain terms.
+	 *
+	 * The Bloom filter is disabled when this is 0.
+	 */
+	private double bloomFilterFalsePositiveRate = 0d;
+	/**
+	 * Determines whether changes to an input dataset are detected from the content of its files, instead of only their size and modification time.
+	 */
+	private boolean inputContentHashed = false;
+	/**
+	 * Determines whether the column files of each input dataset are kept in the output directory after its term index has been generated.
+	 */
+	private boolean columnFilesRetained = true;
+	/**
+	 * The compression of the term index of each input dataset and of the matched terms.
+	 */
+	private IntermediateCodec intermediateCodec = IntermediateCodec.GZIP_FAST;
+	/**
+	 * The directory where the column files are written when they are not retained, or null to write them next to the term index.
+	 */
+	private Path scratchDirectory;
+	/**
+	 * The number of hashes that are kept in the sketch of each term index and of the dataset domain terms.
+	 *
+	 * The similarity scores are estimated from these sketches when this is larger than 0.
+	 */
+	private int sketchSize = 0;
+	/**
+	 * The sketch of the dataset domain terms, which is loaded once and then used for all input datasets.
+	 */
+	private KmvSketch datasetDomainSketch;
+	/**
+	 * Determines whether the input datasets are matched through an inverted index over all of their term indexes.
+	 *
+	 * This inverted index is stored in the output directory, so it is reused when other dataset domain terms are matched against the same input datasets.
+	 */
+	private boolean invertedIndexUsed = false;
+	/**
+	 * The number of rows that are sampled from each table of an input dataset to estimate its similarity score.
+	 *
+	 * The similarity scores are estimated from these samples when this is larger than 0.
+	 */
+	private int rowSampleSize = 0;
+	/**
+	 * The sink that receives the telemetry of each stage, or null if no telemetry is recorded.
+	 */
+	private TelemetrySink telemetrySink;
 	/**
 	 * A list containing the similarity score for each dataset.
 	 *
 	 * This is calculated while datasets are discoverd so it is only available after discoverDatasetsFocusedOnSameDomain() is run.
 	 */
 	private List<DatasetSimilarity> datasetSimilarityScores;
+	/**
+	 * The input datasets for which the similarity score could not be calculated, mapped to the cause of that failure.
+	 *
+	 * This is only available after discoverDatasetsFocusedOnSameDomain() is run.
+	 */
+	private Map<String, Throwable> failedDatasets;
 
 	public DatasetDiscovery(Path datasetDomainTermsDirectory, Path outputDirectory, List<Path> inputDatasets) {
 		this.datasetDomainTermsDirectory = datasetDomainTermsDirectory;
@@ -77,91 +245,794 @@ public class DatasetDiscovery {
 	}
 
 	public Set<String> discoverDatasetsFocusedOnSameDomain() throws IOException {
-		List<Path> datasetSimilarityScorePaths = new ArrayList<>();
-		for(Path inputDataset: inputDatasets) {
-			Path termIndexPath = generateTargetDatasetTermIndex(inputDataset);
-			Path similarityScoresCsvPath = termIndexPath.getParent().resolve(DATASET_SIMILARITY_SCORES_CSV_NAME);
-			MatchingResult matchingResult = calculateSimilarityToTargetDatasetForDomainRepresentation(termIndexPath);
-			writeSingleSimilarityScoreToCsvFile(matchingResult, similarityScoresCsvPath);
-			datasetSimilarityScorePaths.add(similarityScoresCsvPath);
-    	}
+		failedDatasets = new LinkedHashMap<>();
+		List<Path> datasetSimilarityScorePaths;
+		if(invertedIndexUsed) {
+			datasetSimilarityScorePaths = calculateSimilarityWithInvertedIndex();
+		}
+		else if(sketchSize > 0) {
+			datasetSimilarityScorePaths = estimateSimilarityForInputDatasets(this::estimateSimilarityForInputDataset, (inputDataset, refinement) -> calculateExactSimilarity(inputDataset), DATASET_SKETCH_SIMILARITY_SCORES_CSV_NAME);
+		}
+		else if(rowSampleSize > 0) {
+			datasetSimilarityScorePaths = estimateSimilarityForInputDatasets(inputDataset -> sampleSimilarityForInputDataset(inputDataset, rowSampleSize), this::refineSampledSimilarity, DATASET_SAMPLE_SIMILARITY_SCORES_CSV_NAME);
+		}
+		else {
+			datasetSimilarityScorePaths = new ArrayList<>(forEachInputDataset(inputDatasets, this::calculateSimilarityForInputDataset).values());
+		}
 		datasetSimilarityScores = combineDatasetSimilarityScoresInCsvFile(datasetSimilarityScorePaths);
 		Set<String> similarDatasets = discoverDatasetsSimilarToDomain();
     	return similarDatasets;
 	}
 
+	/**
+	 * Discover the k input datasets with the highest similarity scores, ordered by descending similarity score.
+	 *
+	 * Every input dataset is matched exactly, so this is the true top k. See discoverApproximateTopK() to skip most of the input datasets instead.
+	 */
+	public List<DatasetSimilarity> discoverTopK(int k) throws IOException {
+		if(k < 1) {
+			throw new IllegalArgumentException("At least 1 dataset must be discovered, but k was " + k);
+		}
+		failedDatasets = new LinkedHashMap<>();
+		PriorityQueue<DatasetSimilarity> topK = new PriorityQueue<>(Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore));
+		if(invertedIndexUsed) {
+			for(DatasetSimilarity similarityScore : combineDatasetSimilarityScoresInCsvFile(calculateSimilarityWithInvertedIndex())) {
+				addToTopK(topK, k, similarityScore);
+			}
+			return sortByDescendingSimilarityScore(topK);
+		}
+		for(Map.Entry<Path, MatchingResult> matchingResult : forEachInputDataset(inputDatasets, this::calculateExactSimilarity).entrySet()) {
+			addToTopK(topK, k, new DatasetSimilarity(matchingResult.getKey().getFileName().toString(), matchingResult.getValue().getSimilarityScore()));
+		}
+		return sortByDescendingSimilarityScore(topK);
+	}
+
+	/**
+	 * Discover approximately the k input datasets with the highest similarity scores, ordered by descending similarity score.
+	 *
+	 * The similarity score of each input dataset is first estimated from its sketch, if the sketch size is set, or otherwise from a row sample.
+	 * The input datasets are then matched exactly in descending order of the upper bound of their estimate, while a heap keeps the k highest
+	 * similarity scores. As soon as the upper bound of the next input dataset is not above the lowest of those k scores, the remaining input
+	 * datasets are not matched at all.
+	 *
+	 * These upper bounds are confidence limits with a confidence level of APPROXIMATE_TOP_K_CONFIDENCE_LEVEL, not hard bounds. A row sample is
+	 * also taken from the raw values of the tables, without the filtering that D4 applies to the term index. So a dataset that belongs in the
+	 * top k can be skipped. The number of skipped datasets is recorded as the items of the APPROXIMATE_TOP_K_STAGE_NAME telemetry.
+	 * With the inverted index, all similarity scores are calculated, so the result is exact.
+	 */
+	public List<DatasetSimilarity> discoverApproximateTopK(int k) throws IOException {
+		if(k < 1) {
+			throw new IllegalArgumentException("At least 1 dataset must be discovered, but k was " + k);
+		}
+		if(invertedIndexUsed) {
+			return discoverTopK(k);
+		}
+		failedDatasets = new LinkedHashMap<>();
+		try(StageMeasurement measurement = startMeasurement(APPROXIMATE_TOP_K_STAGE_NAME, outputDirectory)){
+			PriorityQueue<DatasetSimilarity> topK = new PriorityQueue<>(Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore));
+			InputDatasetTask<MatchingResult> estimation;
+			if(sketchSize > 0) {
+				estimation = this::estimateSimilarityForInputDataset;
+			}
+			else {
+				int topKRowSampleSize = rowSampleSize > 0 ? rowSampleSize : TOP_K_ROW_SAMPLE_SIZE;
+				estimation = inputDataset -> sampleSimilarityForInputDataset(inputDataset, topKRowSampleSize);
+			}
+			Map<Path, MatchingResult> estimates = forEachInputDataset(inputDatasets, estimation);
+			List<Path> byDescendingUpperBound = new ArrayList<>(estimates.keySet());
+			byDescendingUpperBound.sort(Comparator.comparingDouble((Path inputDataset) -> getSimilarityScoreUpperBound(estimates.get(inputDataset))).reversed());
+			int next = 0;
+			while(next < byDescendingUpperBound.size()) {
+				double lowestTopKScore = topK.size() < k ? -1d : topK.peek().getSimilarityScore();
+				// Match a batch of input datasets at a time, so the configured concurrency is still used
+				List<Path> batch = new ArrayList<>();
+				while(next < byDescendingUpperBound.size() && batch.size() < concurrency
+						&& getSimilarityScoreUpperBound(estimates.get(byDescendingUpperBound.get(next))) > lowestTopKScore) {
+					batch.add(byDescendingUpperBound.get(next));
+					next++;
+				}
+				if(batch.isEmpty()) {
+					break;
+				}
+				// An exact estimate from sketches is the similarity score, but a complete row sample still contains the terms that D4 filters out
+				Map<Path, MatchingResult> matchingResults = forEachInputDataset(batch, inputDataset -> sketchSize > 0 && !estimates.get(inputDataset).isEstimated() ? estimates.get(inputDataset) : calculateExactSimilarity(inputDataset));
+				for(Map.Entry<Path, MatchingResult> matchingResult : matchingResults.entrySet()) {
+					addToTopK(topK, k, new DatasetSimilarity(matchingResult.getKey().getFileName().toString(), matchingResult.getValue().getSimilarityScore()));
+				}
+			}
+			recordMeasurement(measurement, false, List.of(), List.of(), byDescendingUpperBound.size() - next);
+			return sortByDescendingSimilarityScore(topK);
+		}
+	}
+
+	private static double getSimilarityScoreUpperBound(MatchingResult matchingResult) {
+		return matchingResult.isEstimated() ? matchingResult.getSimilarityScoreUpperBound() : matchingResult.getSimilarityScore();
+	}
+
+	/**
+	 * Add a similarity score to the heap of the k highest similarity scores, removing the lowest one if the heap then contains more than k.
+	 */
+	private static void addToTopK(PriorityQueue<DatasetSimilarity> topK, int k, DatasetSimilarity similarityScore) {
+		topK.add(similarityScore);
+		if(topK.size() > k) {
+			topK.poll();
+		}
+	}
+
+	private static List<DatasetSimilarity> sortByDescendingSimilarityScore(Collection<DatasetSimilarity> similarityScores) {
+		List<DatasetSimilarity> sorted = new ArrayList<>(similarityScores);
+		sorted.sort(Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore).reversed());
+		return sorted;
+	}
+
+	/**
+	 * Run the given task for each of the given input datasets, with at most the configured concurrency.
+	 *
+	 * Input datasets for which the task fails are added to the failed datasets and left out of the result.
+	 *
+	 * @return the result of the task for each input dataset, in input order.
+	 */
+	private <T> Map<Path, T> forEachInputDataset(List<Path> datasets, InputDatasetTask<T> task) throws IOException {
+		Map<Path, T> results = new LinkedHashMap<>();
+		ExecutorService executor = virtualThreadsUsed ? IoExecutors.newExecutor(concurrency) : Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<T>> datasetResults = new ArrayList<>();
+			for(Path inputDataset: datasets) {
+				datasetResults.add(executor.submit(() -> task.run(inputDataset)));
+			}
+			// Collect the results in input order so the combined output does not depend on which dataset finishes first.
+			for(int i = 0; i < datasets.size(); i++) {
+				String datasetName = datasets.get(i).getFileName().toString();
+				try {
+					results.put(datasets.get(i), datasetResults.get(i).get());
+				} catch (ExecutionException e) {
+					System.err.println(String.format("Calculating the similarity score for dataset %s failed with exception: ", datasetName));
+					e.getCause().printStackTrace();
+					failedDatasets.put(datasetName, e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Dataset discovery was interrupted while waiting for dataset " + datasetName, e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Calculate the similarity score of each input dataset by looking up each dataset domain term in the inverted index of all input datasets.
+	 *
+	 * Matched terms are not logged in this case.
+	 * An input dataset that is not in the inverted index, e.g. because it was added after the index was opened, is matched on its own instead.
+	 *
+	 * @return the path to the CSV file with the similarity score of each input dataset, in input order.
+	 */
+	private List<Path> calculateSimilarityWithInvertedIndex() throws IOException {
+		Map<Path, Path> termIndexPaths = forEachInputDataset(inputDatasets, this::generateTargetDatasetTermIndex);
+		InvertedIndex invertedIndex = loadInvertedIndex(termIndexPaths.values());
+		Map<String, MatchingResult> invertedIndexMatchingResults = null;
+		List<Path> datasetSimilarityScorePaths = new ArrayList<>();
+		for(Path termIndexPath : termIndexPaths.values()) {
+			Path matchingResultPath = getMatchingResultPath(termIndexPath, datasetDomainTermsDirectory);
+			String parameters = getMatchingResultParameters(termIndexPath, datasetDomainTermsDirectory);
+			MatchingResult matchingResult;
+			if(StageOutputs.isComplete(matchingResultPath, MATCHING_RESULT_STAGE_NAME, parameters)) {
+				matchingResult = readMatchingResult(matchingResultPath);
+			}
+			else {
+				if(invertedIndexMatchingResults == null) {
+					invertedIndexMatchingResults = matchWithDomainBitmap(invertedIndex);
+				}
+				matchingResult = invertedIndexMatchingResults.get(termIndexPath.getParent().getFileName().toString());
+				if(matchingResult == null) {
+					System.out.println(String.format("%s is not in the inverted index. Matching it on its own instead.", termIndexPath.getParent().getFileName().toString()));
+					matchingResult = calculateSimilarityToTargetDatasetForDomainRepresentation(termIndexPath);
+				}
+				else {
+					writeMatchingResult(matchingResult, matchingResultPath, parameters);
+					matchingResult.setRecalculated(true);
+				}
+			}
+			Path similarityScoresCsvPath = termIndexPath.resolveSibling(DATASET_SIMILARITY_SCORES_CSV_NAME);
+			writeSingleSimilarityScoreToCsvFile(matchingResult, similarityScoresCsvPath);
+			datasetSimilarityScorePaths.add(similarityScoresCsvPath);
+		}
+		return datasetSimilarityScorePaths;
+	}
+
+	/**
+	 * Match the dataset domain terms against all input datasets in the inverted index, through a bitmap of the identifiers of the dataset domain terms.
+	 *
+	 * That bitmap is stored in the output directory, along with the number of dataset domain terms. Matching the same
+	 * dataset domain terms again then only requires counting the identifiers that this bitmap has in common with the bitmap of each input dataset.
+	 */
+	private Map<String, MatchingResult> matchWithDomainBitmap(InvertedIndex invertedIndex) throws IOException {
+		Path bitmapPath = outputDirectory.resolve(String.format("domain_bitmap_%s.bitmap", datasetDomainTermsDirectory.getParent().getFileName().toString()));
+		String parameters = StageOutputs.fingerprint(outputDirectory.resolve(INVERTED_INDEX_DIR_NAME)) + ";" + StageOutputs.fingerprint(datasetDomainTermsDirectory);
+		try(StageMeasurement measurement = startMeasurement(DOMAIN_BITMAP_STAGE_NAME, bitmapPath)){
+			if(StageOutputs.isComplete(bitmapPath, DOMAIN_BITMAP_STAGE_NAME, parameters)) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+				try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(bitmapPath)))){
+					long domainSize = input.readLong();
+					return invertedIndex.match(TermBitmap.read(input), domainSize);
+				}
+			}
+			DomainTermSet datasetDomainTerms = getDatasetDomainTerms();
+			if(datasetDomainTerms.size() == 0) {
+				String error = "The domain representation did not contain any terms. The similarity cannot be calculated.";
+				System.err.println(error);
+				throw new IllegalStateException(error);
+			}
+			TermBitmap domainBitmap = invertedIndex.toBitmap(datasetDomainTerms);
+			StageOutputs.writeOutput(bitmapPath, DOMAIN_BITMAP_STAGE_NAME, parameters, outputPath -> {
+				try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(outputPath)))){
+					output.writeLong(datasetDomainTerms.size());
+					domainBitmap.write(output);
+				}
+			});
+			recordMeasurement(measurement, false, List.of(datasetDomainTermsDirectory), List.of(bitmapPath), domainBitmap.getCardinality());
+			return invertedIndex.match(domainBitmap, datasetDomainTerms.size());
+		}
+	}
+
+	/**
+	 * Load the inverted index of the given term indexes, or build it if it does not exist yet or if any of the term indexes has changed.
+	 */
+	private InvertedIndex loadInvertedIndex(Collection<Path> termIndexPaths) throws IOException {
+		Path invertedIndexPath = outputDirectory.resolve(INVERTED_INDEX_DIR_NAME);
+		Map<String, Path> termIndexPathsByDataset = new LinkedHashMap<>();
+		// The format version makes sure that an inverted index without the bitmaps of the datasets is built again
+		StringBuilder parameters = new StringBuilder(InvertedIndex.FORMAT_VERSION + ";");
+		for(Path termIndexPath : termIndexPaths) {
+			String datasetName = termIndexPath.getParent().getFileName().toString();
+			termIndexPathsByDataset.put(datasetName, termIndexPath);
+			parameters.append(String.format("%s=%s;", datasetName, StageOutputs.fingerprint(termIndexPath)));
+		}
+		try(StageMeasurement measurement = startMeasurement(INVERTED_INDEX_DIR_NAME, invertedIndexPath)){
+			if(StageOutputs.isComplete(invertedIndexPath, INVERTED_INDEX_DIR_NAME, parameters.toString())) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+			}
+			else {
+				StageOutputs.writeOutput(invertedIndexPath, INVERTED_INDEX_DIR_NAME, parameters.toString(), outputPath -> InvertedIndex.build(termIndexPathsByDataset, outputPath));
+				recordMeasurement(measurement, false, termIndexPaths, List.of(invertedIndexPath), termIndexPaths.size());
+			}
+			return InvertedIndex.open(invertedIndexPath);
+		}
+	}
+
+	/**
+	 * Estimate the similarity score of each input dataset, and only refine that estimate for an input dataset when needed.
+	 *
+	 * The estimate of an input dataset is refined when the bounds of its estimated similarity score contain the score at which
+	 * the datasets are split by their steepest drop, since it is then uncertain whether it would be selected.
+	 * This is repeated until the bounds of every estimated similarity score are on one side of that split.
+	 *
+	 * @param estimatedSimilarityScoresCsvName the name of the CSV file in which an estimated similarity score is written, instead of DATASET_SIMILARITY_SCORES_CSV_NAME.
+	 * @return the path to the CSV file with the similarity score of each input dataset, in input order.
+	 */
+	private List<Path> estimateSimilarityForInputDatasets(InputDatasetTask<MatchingResult> estimation, RefinementTask refinement, String estimatedSimilarityScoresCsvName) throws IOException {
+		Map<Path, MatchingResult> matchingResults = forEachInputDataset(inputDatasets, estimation);
+		Map<Path, Integer> refinements = new HashMap<>();
+		while(true) {
+			List<DatasetSimilarity> similarityScores = matchingResults.entrySet().stream()
+					.map(result -> new DatasetSimilarity(result.getKey().toString(), result.getValue().getSimilarityScore()))
+					.collect(Collectors.toList());
+			double splitScore = getSplitScore(similarityScores);
+			List<Path> uncertainDatasets = matchingResults.entrySet().stream()
+					.filter(result -> result.getValue().isEstimated())
+					.filter(result -> result.getValue().getSimilarityScoreLowerBound() <= splitScore && splitScore <= result.getValue().getSimilarityScoreUpperBound())
+					.map(Map.Entry::getKey)
+					.collect(Collectors.toList());
+			if(uncertainDatasets.isEmpty()) {
+				break;
+			}
+			System.out.println(String.format("Refining the similarity score of %d datasets, since their estimated similarity score is too close to %f", uncertainDatasets.size(), splitScore));
+			matchingResults.keySet().removeAll(uncertainDatasets);
+			for(Path uncertainDataset : uncertainDatasets) {
+				refinements.merge(uncertainDataset, 1, Integer::sum);
+			}
+			Map<Path, MatchingResult> refinedMatchingResults = forEachInputDataset(uncertainDatasets, inputDataset -> refinement.run(inputDataset, refinements.get(inputDataset)));
+			matchingResults.putAll(refinedMatchingResults);
+		}
+		List<Path> datasetSimilarityScorePaths = new ArrayList<>();
+		for(Path inputDataset : inputDatasets) {
+			MatchingResult matchingResult = matchingResults.get(inputDataset);
+			if(matchingResult == null) {
+				continue;
+			}
+			Path outputForDatasetPath = convertDatasetInputPathToOutputPathSubdirectory(inputDataset, outputDirectory);
+			Path similarityScoresCsvPath = outputForDatasetPath.resolve(matchingResult.isEstimated() ? estimatedSimilarityScoresCsvName : DATASET_SIMILARITY_SCORES_CSV_NAME);
+			writeSingleSimilarityScoreToCsvFile(matchingResult, similarityScoresCsvPath);
+			datasetSimilarityScorePaths.add(similarityScoresCsvPath);
+		}
+		return datasetSimilarityScorePaths;
+	}
+
+	private MatchingResult calculateExactSimilarity(Path inputDataset) throws IOException {
+		return calculateSimilarityToTargetDatasetForDomainRepresentation(generateTargetDatasetTermIndex(inputDataset));
+	}
+
+	/**
+	 * Estimate the similarity of an input dataset to the dataset domain terms from a sample of the given number of rows from each of its tables.
+	 */
+	private MatchingResult sampleSimilarityForInputDataset(Path inputDataset, int rowsPerTable) throws IOException {
+		try(StageMeasurement measurement = startMeasurement(ROW_SAMPLE_STAGE_NAME, inputDataset)){
+			RowSample rowSample = RowSample.read(inputDataset, rowsPerTable);
+			MatchingResult matchingResult = rowSample.estimateSimilarity(getDatasetDomainTerms(), ROW_SAMPLE_CONFIDENCE_Z);
+			matchingResult.setRecalculated(true);
+			recordMeasurement(measurement, false, List.of(inputDataset), List.of(), rowSample.getSampledRowCount());
+			return matchingResult;
+		}
+	}
+
+	/**
+	 * Refine the similarity score estimated from a row sample, first with a larger sample and then by matching all terms of the input dataset.
+	 */
+	private MatchingResult refineSampledSimilarity(Path inputDataset, int refinement) throws IOException {
+		if(refinement == 1) {
+			return sampleSimilarityForInputDataset(inputDataset, rowSampleSize * ROW_SAMPLE_REFINEMENT_FACTOR);
+		}
+		return calculateExactSimilarity(inputDataset);
+	}
+
+	/**
+	 * Estimate the similarity of an input dataset to the dataset domain terms from their sketches.
+	 *
+	 * If both sketches contain all of their terms, the result is exact and it has no bounds.
+	 */
+	private MatchingResult estimateSimilarityForInputDataset(Path inputDataset) throws IOException {
+		KmvSketch datasetSketch = loadTermIndexSketch(generateTargetDatasetTermIndex(inputDataset));
+		KmvSketch domainSketch = getDatasetDomainSketch();
+		IntersectionEstimate intersection = datasetSketch.estimateIntersection(domainSketch, SKETCH_CONFIDENCE_Z);
+		MatchingResult matchingResult = new MatchingResult(intersection.getEstimate(), domainSketch.getTermCount(), datasetSketch.getTermCount());
+		long smallestSize = Math.max(1, Math.min(domainSketch.getTermCount(), datasetSketch.getTermCount()));
+		matchingResult.setSimilarityScore(intersection.getEstimate() / (double) smallestSize);
+		if(!intersection.isExact()) {
+			matchingResult.setSimilarityScoreLowerBound(intersection.getLowerBound() / (double) smallestSize);
+			matchingResult.setSimilarityScoreUpperBound(intersection.getUpperBound() / (double) smallestSize);
+		}
+		matchingResult.setRecalculated(true);
+		return matchingResult;
+	}
+
+	/**
+	 * Load the sketch that is stored next to the given term index, or create it if it does not exist yet.
+	 */
+	private KmvSketch loadTermIndexSketch(Path termIndexPath) throws IOException {
+		Path sketchPath = termIndexPath.resolveSibling(TERM_INDEX_SKETCH_FILE_NAME);
+		try(StageMeasurement measurement = startMeasurement(TERM_INDEX_SKETCH_FILE_NAME, sketchPath)){
+			String parameters = sketchSize + ";" + StageOutputs.fingerprint(termIndexPath);
+			if(StageOutputs.isComplete(sketchPath, TERM_INDEX_SKETCH_FILE_NAME, parameters)) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+				return KmvSketch.read(sketchPath);
+			}
+			KmvSketch sketch = KmvSketch.create(sketchSize);
+			TermConsumer consumer = new TermConsumer() {
+				@Override
+				public void open() {}
+
+				@Override
+				public void consume(Term term) {
+					sketch.add(term.name());
+				}
+
+				@Override
+				public void close() {}
+			};
+			new TermIndexReader(termIndexPath.toFile()).read(consumer);
+			StageOutputs.writeOutput(sketchPath, TERM_INDEX_SKETCH_FILE_NAME, parameters, sketch::write);
+			recordMeasurement(measurement, false, List.of(termIndexPath), List.of(sketchPath), sketch.getTermCount());
+			return sketch;
+		}
+	}
+
+	/**
+	 * Load the sketch that is stored next to the dataset domain terms, or create it if it does not exist yet.
+	 */
+	private synchronized KmvSketch getDatasetDomainSketch() throws IOException {
+		if(datasetDomainSketch == null) {
+			Path sketchPath = datasetDomainTermsDirectory.resolveSibling(DATASET_DOMAIN_SKETCH_FILE_NAME);
+			String parameters = sketchSize + ";" + StageOutputs.fingerprint(datasetDomainTermsDirectory);
+			if(StageOutputs.isComplete(sketchPath, DATASET_DOMAIN_SKETCH_FILE_NAME, parameters)) {
+				datasetDomainSketch = KmvSketch.read(sketchPath);
+			}
+			else {
+				KmvSketch sketch = KmvSketch.create(sketchSize);
+				getDatasetDomainTerms().forEach(sketch::add);
+				StageOutputs.writeOutput(sketchPath, DATASET_DOMAIN_SKETCH_FILE_NAME, parameters, sketch::write);
+				datasetDomainSketch = sketch;
+			}
+		}
+		return datasetDomainSketch;
+	}
+
+	private Path calculateSimilarityForInputDataset(Path inputDataset) throws IOException {
+		Path termIndexPath = generateTargetDatasetTermIndex(inputDataset);
+		Path similarityScoresCsvPath = termIndexPath.getParent().resolve(DATASET_SIMILARITY_SCORES_CSV_NAME);
+		MatchingResult matchingResult = calculateSimilarityToTargetDatasetForDomainRepresentation(termIndexPath);
+		writeSingleSimilarityScoreToCsvFile(matchingResult, similarityScoresCsvPath);
+		return similarityScoresCsvPath;
+	}
+
 	private Path generateTargetDatasetTermIndex(Path inputDataset) throws IOException {
 		Path outputForDatasetPath = convertDatasetInputPathToOutputPathSubdirectory(inputDataset, outputDirectory);
 		ensureOutputDirExists(outputForDatasetPath);
+		if(!columnFilesRetained) {
+			return generateTermIndexWithoutColumnFiles(inputDataset, outputForDatasetPath);
+		}
 		Path columnsPath = generateColumnFiles(inputDataset, outputForDatasetPath);
 		Path termIndexPath = generateTermIndex(columnsPath);
 		return termIndexPath;
 	}
 
-	private MatchingResult calculateSimilarityToTargetDatasetForDomainRepresentation(Path termIndexPath) throws IOException {
-		if(!inputExists(termIndexPath)) {
-			throw new IllegalArgumentException(String.format("The input dataset %s does not exist.", termIndexPath.toString()));
+	private MatchingResult calculateSimilarityToTargetDatasetForDomainRepresentation(Path termIndexPath) throws IOException {
+		if(!inputExists(termIndexPath)) {
+			throw new IllegalArgumentException(String.format("The input dataset %s does not exist.", termIndexPath.toString()));
+		}
+		Path outputPath = termIndexPath.getParent();
+		ensureOutputDirExists(outputPath);
+		Path matchingResultPath = getMatchingResultPath(termIndexPath, datasetDomainTermsDirectory);
+		try(StageMeasurement measurement = startMeasurement(MATCHING_RESULT_STAGE_NAME, matchingResultPath)){
+			String parameters = getMatchingResultParameters(termIndexPath, datasetDomainTermsDirectory);
+			if(StageOutputs.isComplete(matchingResultPath, MATCHING_RESULT_STAGE_NAME, parameters)
+					&& (!matchedTermsLogged || StageOutputs.isComplete(getMatchedTermsPath(termIndexPath, datasetDomainTermsDirectory), MATCHED_TERMS_STAGE_NAME, parameters))) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+				return readMatchingResult(matchingResultPath);
+			}
+			MatchingResult matchingResult;
+			Semaphore permits = cpuBoundStagePermits;
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Waiting to match " + termIndexPath + " was interrupted", e);
+			}
+			try {
+				matchingResult = countTargetDatasetMatchedTerms(termIndexPath);
+			} finally {
+				permits.release();
+			}
+			writeMatchingResult(matchingResult, matchingResultPath, parameters);
+			matchingResult.setRecalculated(true);
+			recordMeasurement(measurement, false, List.of(termIndexPath), List.of(matchingResultPath), matchingResult.getDatasetSize());
+			return matchingResult;
+		}
+	}
+
+	/**
+	 * Calculate the similarity of a single input dataset to each of the given dataset domain terms, while reading the term index of that dataset only once.
+	 *
+	 * The matching results are stored in the same way as they are for dataset discovery, so a later dataset discovery for one of these domain representations reuses them.
+	 * Matched terms are not logged in this case.
+	 *
+	 * @return the matching result for each of the given directories containing dataset domain terms, in the same order.
+	 */
+	public Map<Path, MatchingResult> calculateSimilarityToDomainRepresentations(Path inputDataset, List<Path> datasetDomainTermsDirectories) throws IOException {
+		Path termIndexPath = generateTargetDatasetTermIndex(inputDataset);
+		if(!inputExists(termIndexPath)) {
+			throw new IllegalArgumentException(String.format("The input dataset %s does not exist.", termIndexPath.toString()));
+		}
+		Map<Path, MatchingResult> matchingResults = new LinkedHashMap<>();
+		Map<Path, MatchingTermConsumer> unmatchedDomainRepresentations = new LinkedHashMap<>();
+		for(Path domainTermsDirectory : datasetDomainTermsDirectories) {
+			if(!inputExists(domainTermsDirectory)) {
+				throw new IllegalArgumentException(String.format("The dataset domain terms %s do not exist.", domainTermsDirectory.toString()));
+			}
+			Path matchingResultPath = getMatchingResultPath(termIndexPath, domainTermsDirectory);
+			if(StageOutputs.isComplete(matchingResultPath, MATCHING_RESULT_STAGE_NAME, getMatchingResultParameters(termIndexPath, domainTermsDirectory))) {
+				matchingResults.put(domainTermsDirectory, readMatchingResult(matchingResultPath));
+				continue;
+			}
+			DomainTermSet domainTerms = domainTermsDirectory.equals(datasetDomainTermsDirectory) ?
+					getDatasetDomainTerms()
+					: getOtherDatasetDomainTerms(domainTermsDirectory);
+			if(domainTerms.size() == 0) {
+				String error = String.format("The domain representation %s did not contain any terms. The similarity cannot be calculated.", domainTermsDirectory.toString());
+				System.err.println(error);
+				throw new IllegalStateException(error);
+			}
+			matchingResults.put(domainTermsDirectory, null);
+			unmatchedDomainRepresentations.put(domainTermsDirectory, new MatchingTermConsumer(domainTerms, null));
+		}
+		if(!unmatchedDomainRepresentations.isEmpty()) {
+			TermConsumer consumer = new TermConsumer() {
+				@Override
+				public void open() {}
+
+				@Override
+				public void consume(Term term) {
+					for(MatchingTermConsumer domainConsumer : unmatchedDomainRepresentations.values()) {
+						domainConsumer.consume(term);
+					}
+				}
+
+				@Override
+				public void close() {}
+			};
+			new TermIndexReader(termIndexPath.toFile()).read(consumer);
+			for(Map.Entry<Path, MatchingTermConsumer> unmatched : unmatchedDomainRepresentations.entrySet()) {
+				MatchingResult matchingResult = unmatched.getValue().getMatchingResult();
+				writeMatchingResult(matchingResult, getMatchingResultPath(termIndexPath, unmatched.getKey()), getMatchingResultParameters(termIndexPath, unmatched.getKey()));
+				matchingResults.put(unmatched.getKey(), matchingResult);
+			}
+		}
+		return matchingResults;
+	}
+
+	private Path getMatchingResultPath(Path termIndexPath, Path domainTermsDirectory) {
+		Path outputPath = termIndexPath.getParent();
+		return outputPath.resolve(String.format("matching_result_%s_%s.json", outputPath.getFileName().toString(), domainTermsDirectory.getParent().getFileName().toString()));
+	}
+
+	private Path getMatchedTermsPath(Path termIndexPath, Path domainTermsDirectory) throws IOException {
+		Path outputPath = termIndexPath.getParent();
+		return outputPath.resolve(intermediateCodec.resolveFileName(outputPath, String.format("matched_terms_%s_%s.tsv.gz", outputPath.getFileName().toString(), domainTermsDirectory.getParent().getFileName().toString())));
+	}
+
+	/**
+	 * The parameters of a matching result are the fingerprints of the term index and the dataset domain terms it was calculated from.
+	 */
+	private String getMatchingResultParameters(Path termIndexPath, Path domainTermsDirectory) throws IOException {
+		return StageOutputs.fingerprint(termIndexPath) + ";" + StageOutputs.fingerprint(domainTermsDirectory);
+	}
+
+	private MatchingResult readMatchingResult(Path matchingResultPath) throws IOException {
+		try(Reader reader = Files.newBufferedReader(matchingResultPath)){
+			return new Gson().fromJson(reader, MatchingResult.class);
+		}
+	}
+
+	/**
+	 * Calculate the overlap coefficient for the given matching result and store it.
+	 */
+	private void writeMatchingResult(MatchingResult matchingResult, Path matchingResultPath, String parameters) throws IOException {
+		double overlapCoefficient = (matchingResult.getMatched() * 1d) / (Math.min(matchingResult.getDatasetSize(), matchingResult.getDomainRepresentationSize()));
+		matchingResult.setSimilarityScore(overlapCoefficient);
+		StageOutputs.writeOutput(matchingResultPath, MATCHING_RESULT_STAGE_NAME, parameters, outputPath -> {
+			try(Writer writer = Files.newBufferedWriter(outputPath)){
+		    	new GsonBuilder().setPrettyPrinting().create().toJson(matchingResult, writer);
+	    	}
+		});
+	}
+
+	MatchingResult countTargetDatasetMatchedTerms(Path termIndexPath) throws JsonSyntaxException, JsonIOException, IOException {
+		if(!inputExists(termIndexPath) || !inputExists(datasetDomainTermsDirectory)) {
+			throw new IllegalArgumentException();
+		}
+		Path outputPath = termIndexPath.getParent();
+		ensureOutputDirExists(outputPath);
+
+		// Sort-merge matching reads the sorted dataset domain terms from disk, so they are not loaded into memory in that case
+		DomainTermSet datasetDomainTerms = MATCHING_SORT_MERGE.equals(matchingStrategy) ? null : getDatasetDomainTerms();
+		if(datasetDomainTerms != null) {
+			requireDatasetDomainTerms(datasetDomainTerms.size());
+		}
+		if(!matchedTermsLogged) {
+			return matchTargetDatasetTerms(termIndexPath, datasetDomainTerms, null);
+		}
+		Map<String, String> columnDomainsByTerm = getDatasetDomainTermColumnDomains();
+		MatchingResult[] matchingResult = new MatchingResult[1];
+		StageOutputs.writeOutput(getMatchedTermsPath(termIndexPath, datasetDomainTermsDirectory), MATCHED_TERMS_STAGE_NAME, getMatchingResultParameters(termIndexPath, datasetDomainTermsDirectory), matchedTermsPath -> {
+			try(MatchedTermsWriter matchedTermsWriter = new MatchedTermsWriter(matchedTermsPath, intermediateCodec, columnDomainsByTerm)){
+				matchingResult[0] = matchTargetDatasetTerms(termIndexPath, datasetDomainTerms, matchedTermsWriter::write);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		});
+		return matchingResult[0];
+	}
+
+	/**
+	 * Count the terms of the target dataset that are also dataset domain terms, using the configured matching strategy.
+	 *
+	 * @param matchedTermConsumer receives each matched term, or null if the matched terms are not needed.
+	 */
+	private MatchingResult matchTargetDatasetTerms(Path termIndexPath, DomainTermSet datasetDomainTerms, Consumer<String> matchedTermConsumer) throws IOException {
+		if(MATCHING_SORT_MERGE.equals(matchingStrategy)) {
+			MatchingResult matchingResult = ExternalTermSorter.mergeJoin(getSortedTermIndexPath(termIndexPath), getSortedDatasetDomainTermsPath(), matchedTermConsumer);
+			requireDatasetDomainTerms(matchingResult.getDomainRepresentationSize());
+			return matchingResult;
+		}
+		if(MATCHING_STREAMING.equals(matchingStrategy)) {
+			MatchingTermConsumer consumer = new MatchingTermConsumer(datasetDomainTerms, matchedTermConsumer);
+			new TermIndexReader(termIndexPath.toFile()).read(consumer);
+			return consumer.getMatchingResult();
+		}
+		Set<String> datasetTerms = readTermsFromIndexFile(termIndexPath);
+		long matched = 0;
+		for(String datasetTerm : datasetTerms) {
+			if(datasetDomainTerms.contains(datasetTerm)) {
+				matched++;
+				if(matchedTermConsumer != null) {
+					matchedTermConsumer.accept(datasetTerm);
+				}
+			}
+		}
+		return new MatchingResult(matched, datasetDomainTerms.size(), datasetTerms.size());
+	}
+
+	private void requireDatasetDomainTerms(long datasetDomainTermCount) {
+		if(datasetDomainTermCount == 0) {
+			String error = "The domain representation did not contain any terms. The similarity cannot be calculated.";
+			System.err.println(error);
+			throw new IllegalStateException(error);
+		}
+	}
+
+	/**
+	 * The memory budget of a single sort for MATCHING_SORT_MERGE, which is an equal share of the budget for all sorts that run at the same time.
+	 */
+	private long getSortMemoryBudgetPerSort() {
+		return sortMemoryBudget / concurrency;
+	}
+
+	/**
+	 * Sort the terms of the given term index into a file next to it, or reuse that file if the term index has not changed since.
+	 */
+	private Path getSortedTermIndexPath(Path termIndexPath) throws IOException {
+		Path sortedTermIndexPath = termIndexPath.resolveSibling(SORTED_TERM_INDEX_FILE_NAME);
+		String parameters = StageOutputs.fingerprint(termIndexPath);
+		if(!StageOutputs.isComplete(sortedTermIndexPath, SORTED_TERMS_STAGE_NAME, parameters)) {
+			StageOutputs.writeOutput(sortedTermIndexPath, SORTED_TERMS_STAGE_NAME, parameters, outputPath -> {
+				ExternalTermSorter sorter = new ExternalTermSorter(getSortMemoryBudgetPerSort(), outputPath.getParent());
+				try {
+					new TermIndexReader(termIndexPath.toFile()).read(new TermConsumer() {
+						@Override
+						public void open() {}
+
+						@Override
+						public void consume(Term term) {
+							try {
+								sorter.add(term.name());
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						}
+
+						@Override
+						public void close() {}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+				sorter.sortTo(outputPath);
+			});
+		}
+		return sortedTermIndexPath;
+	}
+
+	/**
+	 * Sort the dataset domain terms into a file next to their directory once, or reuse that file if they have not changed since.
+	 *
+	 * The terms are read from the term dictionary, or from the column domains if there is none, while they are sorted. So they are not loaded into memory first.
+	 * This sort runs on the thread of one of the input datasets that are matched, so it uses the same share of the memory budget as the sort of an input dataset.
+	 */
+	private synchronized Path getSortedDatasetDomainTermsPath() throws IOException {
+		if(sortedDatasetDomainTermsPath == null) {
+			Path sortedPath = datasetDomainTermsDirectory.resolveSibling(SORTED_DATASET_DOMAIN_TERMS_FILE_NAME);
+			String parameters = StageOutputs.fingerprint(datasetDomainTermsDirectory);
+			if(!StageOutputs.isComplete(sortedPath, SORTED_TERMS_STAGE_NAME, parameters)) {
+				StageOutputs.writeOutput(sortedPath, SORTED_TERMS_STAGE_NAME, parameters, outputPath -> {
+					ExternalTermSorter sorter = new ExternalTermSorter(getSortMemoryBudgetPerSort(), outputPath.getParent());
+					Path dictionaryPath = datasetDomainTermsDirectory.resolveSibling(DatasetDomainTerms.DATASET_DOMAIN_DICTIONARY_FILE_NAME);
+					if(dictionaryPath.toFile().exists()) {
+						try {
+							TermDictionary.open(dictionaryPath).forEach(term -> {
+								try {
+									sorter.add(term);
+								} catch (IOException e) {
+									throw new UncheckedIOException(e);
+								}
+							});
+						} catch (UncheckedIOException e) {
+							throw e.getCause();
+						}
+					}
+					else {
+						// Terms that occur in several column domains are added more than once, but the sorter only keeps one of them
+						ColumnDomains.forEach(datasetDomainTermsDirectory, (name, columnDomain) -> {
+							for(String term : columnDomain.getTerms()) {
+								sorter.add(term);
+							}
+						});
+					}
+					sorter.sortTo(outputPath);
+				});
+			}
+			sortedDatasetDomainTermsPath = sortedPath;
+		}
+		return sortedDatasetDomainTermsPath;
+	}
+
+	/**
+	 * Load the names of the column domains that each dataset domain term occurs in, from the JSON files in the directory containing the dataset domain terms.
+	 *
+	 * The name of a column domain is the name of its file, without the extension. When a term occurs in several column domains, their names are separated by commas.
+	 */
+	private synchronized Map<String, String> getDatasetDomainTermColumnDomains() throws IOException {
+		if(datasetDomainTermColumnDomains == null) {
+			Map<String, String> columnDomainsByTerm = new HashMap<>();
+			ColumnDomains.forEach(datasetDomainTermsDirectory, (columnDomainName, columnDomain) -> {
+				for(String term : columnDomain.getTerms()) {
+					columnDomainsByTerm.merge(term, columnDomainName, (existing, added) -> existing + "," + added);
+				}
+			});
+			datasetDomainTermColumnDomains = columnDomainsByTerm;
+		}
+		return datasetDomainTermColumnDomains;
+	}
+
+	private synchronized DomainTermSet getDatasetDomainTerms() throws IOException {
+		if(datasetDomainTerms == null) {
+			datasetDomainTerms = prefilterDatasetDomainTerms(datasetDomainTermsDirectory, loadDatasetDomainTerms(datasetDomainTermsDirectory));
 		}
-		Path outputPath = termIndexPath.getParent();
-		ensureOutputDirExists(outputPath);
-		Path matchingResultPath = outputPath.resolve(String.format("matching_result_%s_%s.json", termIndexPath.getParent().getFileName().toString(), datasetDomainTermsDirectory.getParent().getFileName().toString()));
-		if(outputExists(matchingResultPath)) {
-			try(Reader reader = Files.newBufferedReader(matchingResultPath)){
-				MatchingResult existingMatchingResult = new Gson().fromJson(reader, MatchingResult.class);
-				return existingMatchingResult;
-			}
+		return datasetDomainTerms;
+	}
+
+	/**
+	 * Load the dataset domain terms in the given directory once, so they can be reused when they are matched against other input datasets.
+	 */
+	private synchronized DomainTermSet getOtherDatasetDomainTerms(Path domainTermsDirectory) throws IOException {
+		DomainTermSet domainTerms = otherDatasetDomainTerms.get(domainTermsDirectory);
+		if(domainTerms == null) {
+			domainTerms = prefilterDatasetDomainTerms(domainTermsDirectory, loadDatasetDomainTerms(domainTermsDirectory));
+			otherDatasetDomainTerms.put(domainTermsDirectory, domainTerms);
 		}
-		MatchingResult matchingResult = countTargetDatasetMatchedTerms(termIndexPath);
-		double overlapCoefficient = (matchingResult.getMatched() * 1d) / (Math.min(matchingResult.getDatasetSize(), matchingResult.getDomainRepresentationSize()));
-		matchingResult.setSimilarityScore(overlapCoefficient);
-		try(Writer writer = Files.newBufferedWriter(matchingResultPath)){
-	    	new GsonBuilder().setPrettyPrinting().create().toJson(matchingResult, writer);
-    	}
-		return matchingResult;
+		return domainTerms;
 	}
 
-	private MatchingResult countTargetDatasetMatchedTerms(Path termIndexPath) throws JsonSyntaxException, JsonIOException, IOException {
-		if(!inputExists(termIndexPath) || !inputExists(datasetDomainTermsDirectory)) {
-			throw new IllegalArgumentException();
+	/**
+	 * Add a Bloom filter in front of the given dataset domain terms, if a false-positive rate is configured.
+	 */
+	private DomainTermSet prefilterDatasetDomainTerms(Path datasetDomainTermsDirectory, DomainTermSet datasetDomainTerms) throws IOException {
+		if(bloomFilterFalsePositiveRate <= 0d) {
+			return datasetDomainTerms;
 		}
-		Path outputPath = termIndexPath.getParent();
-		ensureOutputDirExists(outputPath);
+		return new BloomFilteredDomainTermSet(loadBloomFilter(datasetDomainTermsDirectory, datasetDomainTerms), datasetDomainTerms);
+	}
 
-		List<ColumnDomain> datasetDomain = new ArrayList<>();
-		Files.list(datasetDomainTermsDirectory).forEach(datasetDomainFile -> {
-			try(Reader reader = Files.newBufferedReader(datasetDomainFile)){
-				datasetDomain.add(new GsonBuilder()
-						.create()
-						.fromJson(reader, ColumnDomain.class));
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		});
-		Set<String> datasetDomainTerms = datasetDomain.stream()
-				.flatMap(columnDomain -> columnDomain.getTerms().stream())
-				.collect(Collectors.toSet());
-		if(datasetDomainTerms.size() == 0) {
-			String error = "The domain representation did not contain any terms. The similarity cannot be calculated.";
-			System.err.println(error);
-			throw new IllegalStateException(error);
+	/**
+	 * Load the Bloom filter that is stored next to the given directory, or create it if it does not exist yet.
+	 *
+	 * An existing Bloom filter is only reused if it was created with the same false-positive rate from the same dataset domain terms.
+	 */
+	private BloomFilter loadBloomFilter(Path datasetDomainTermsDirectory, DomainTermSet datasetDomainTerms) throws IOException {
+		Path bloomFilterPath = datasetDomainTermsDirectory.resolveSibling(DATASET_DOMAIN_BLOOM_FILTER_FILE_NAME);
+		Path dictionaryPath = datasetDomainTermsDirectory.resolveSibling(DatasetDomainTerms.DATASET_DOMAIN_DICTIONARY_FILE_NAME);
+		// The dataset domain terms are loaded from the term dictionary if it exists, so the Bloom filter depends on that instead
+		String parameters = bloomFilterFalsePositiveRate + ";" + StageOutputs.fingerprint(dictionaryPath.toFile().exists() ? dictionaryPath : datasetDomainTermsDirectory);
+		if(Files.exists(bloomFilterPath) && StageOutputs.readManifest(bloomFilterPath) == null) {
+			// A Bloom filter from before manifests were introduced can not be checked against the dataset domain terms, so it is recreated
+			StageOutputs.delete(bloomFilterPath);
 		}
-		Set<String> datasetTerms = readTermsFromIndexFile(termIndexPath);
-		Set<String> matchedDatasetTerms = datasetTerms.stream()
-				.filter(datasetTerm -> datasetDomainTerms.contains(datasetTerm))
-				.collect(Collectors.toSet());
+		if(StageOutputs.isComplete(bloomFilterPath, DATASET_DOMAIN_BLOOM_FILTER_FILE_NAME, parameters)) {
+			return BloomFilter.read(bloomFilterPath);
+		}
+		BloomFilter bloomFilter = BloomFilter.create(datasetDomainTerms.size(), bloomFilterFalsePositiveRate);
+		datasetDomainTerms.forEach(bloomFilter::add);
+		StageOutputs.writeOutput(bloomFilterPath, DATASET_DOMAIN_BLOOM_FILTER_FILE_NAME, parameters, bloomFilter::write);
+		return bloomFilter;
+	}
 
-		if(matchedTermsLogged) {
-			Path matchedTermsPath = outputPath
-					.resolve("matched-terms.txt");
-			for(String matchedTerm: matchedDatasetTerms) {
-				Files.writeString(matchedTermsPath, matchedTerm+"\n", CREATE_AND_APPEND);
-			}
-			Files.writeString(matchedTermsPath, "\n", CREATE_AND_APPEND);
+	/**
+	 * Load the dataset domain terms from the term dictionary next to the given directory.
+	 *
+	 * If the dataset domain terms were generated before the term dictionary was introduced, they are read from the column domains in the given directory instead.
+	 * Those terms are kept off the heap, as are the terms of the term dictionary when domainTermsOffHeap is set.
+	 */
+	DomainTermSet loadDatasetDomainTerms(Path datasetDomainTermsDirectory) throws IOException {
+		Path dictionaryPath = datasetDomainTermsDirectory.resolveSibling(DatasetDomainTerms.DATASET_DOMAIN_DICTIONARY_FILE_NAME);
+		if(dictionaryPath.toFile().exists()) {
+			TermDictionary dictionary = TermDictionary.open(dictionaryPath);
+			return domainTermsOffHeap ? OffHeapDomainTermSet.copyOf(dictionary) : dictionary;
 		}
-		return new MatchingResult(matchedDatasetTerms.size(), datasetDomainTerms.size(), datasetTerms.size());
+		OffHeapDomainTermSet datasetDomainTerms = OffHeapDomainTermSet.create(0);
+		ColumnDomains.forEach(datasetDomainTermsDirectory, (name, columnDomain) -> columnDomain.getTerms().forEach(datasetDomainTerms::add));
+		return datasetDomainTerms;
 	}
 
-	private Set<String> readTermsFromIndexFile(Path termIndexFile) throws IOException{
+	Set<String> readTermsFromIndexFile(Path termIndexFile) throws IOException{
 		Set<String> datasetTerms = new HashSet<>();
 		TermConsumer consumer = new TermConsumer() {
 			@Override
@@ -179,49 +1050,89 @@ public class DatasetDiscovery {
 		return datasetTerms;
 	}
 
+	/**
+	 * Write the similarity score of the selected variant to the CSV file of a dataset.
+	 *
+	 * If that file already has a line for the selected variant, it is kept, since other domain representations that are matched against
+	 * the same dataset also write to this file. That line is only replaced when the matching result was recalculated in this run, because
+	 * the dataset or the dataset domain terms changed, and only when the score has changed. Estimated matching results are never stored,
+	 * so they are always recalculated and their line is replaced whenever the dataset, the dataset domain terms or the estimation parameters changed it.
+	 * The file is written without a manifest, since those other scores may be appended to it later.
+	 */
 	private void writeSingleSimilarityScoreToCsvFile(MatchingResult matchingResult, Path similarityScoresCsvPath) throws IOException {
-		if(similarityScoresCsvPath.toFile().exists()) {
-			return;
-		}
-		writeSimilarityScoreToCsvFile(matchingResult, similarityScoresCsvPath);
-	}
-
-	private void writeSimilarityScoreToCsvFile(MatchingResult matchingResult, Path similarityScoresCsvPath) throws IOException {
-		if(!similarityScoresCsvPath.toFile().exists()) {
-			Files.writeString(similarityScoresCsvPath, "domain_representation_type,domain_representation_size,dataset_size,matched,overlap_coefficient\n", CREATE_AND_APPEND);
-		}
-		String csvOutput = String.format(
-				"%s,%d,%d,%d,%f\n",
+		String similarityScoreLine = String.format(
+				"%s,%d,%d,%d,%f",
 				DATASET_DISCOVERY_SELECTED_VARIANT,
 				matchingResult.getDomainRepresentationSize(),
 				matchingResult.getDatasetSize(),
 				matchingResult.getMatched(),
 				matchingResult.getSimilarityScore());
-		Files.writeString(similarityScoresCsvPath, csvOutput, CREATE_AND_APPEND);
+		List<String> lines = new ArrayList<>();
+		if(similarityScoresCsvPath.toFile().exists()) {
+			lines.addAll(Files.readAllLines(similarityScoresCsvPath));
+			int selectedVariantIndex = -1;
+			for(int i = 0; i < lines.size() && selectedVariantIndex < 0; i++) {
+				if(lines.get(i).startsWith(DATASET_DISCOVERY_SELECTED_VARIANT+",")) {
+					selectedVariantIndex = i;
+				}
+			}
+			if(selectedVariantIndex < 0) {
+				lines.add(similarityScoreLine);
+			}
+			else if(!matchingResult.isRecalculated() || lines.get(selectedVariantIndex).equals(similarityScoreLine)) {
+				return;
+			}
+			else {
+				lines.set(selectedVariantIndex, similarityScoreLine);
+			}
+		}
+		else {
+			lines.add("domain_representation_type,domain_representation_size,dataset_size,matched,overlap_coefficient");
+			lines.add(similarityScoreLine);
+		}
+		Path partialSimilarityScoresCsvPath = similarityScoresCsvPath.resolveSibling(StageOutputs.PARTIAL_PREFIX + similarityScoresCsvPath.getFileName());
+		Files.writeString(partialSimilarityScoresCsvPath, String.join("\n", lines) + "\n");
+		Files.move(partialSimilarityScoresCsvPath, similarityScoresCsvPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 	}
 
+	/**
+	 * Combine the similarity scores of all datasets into a single CSV file.
+	 *
+	 * The combined file is only created again when a dataset was added or removed, or when the similarity score of a dataset has changed.
+	 */
 	private List<DatasetSimilarity> combineDatasetSimilarityScoresInCsvFile(List<Path> datasetSimilarityScoresPaths) throws IOException {
 		Path combinedSimilarityScoresPath = outputDirectory.resolve(DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV);
-		if(outputExists(combinedSimilarityScoresPath)) {
-			return readDatasetSimilarityScores(combinedSimilarityScoresPath);
+		StringBuilder parameters = new StringBuilder();
+		for (Path datasetSimilarityScoresPath : datasetSimilarityScoresPaths) {
+			if(datasetSimilarityScoresPath.toFile().exists()) {
+				parameters.append(String.format("%s=%s;", datasetSimilarityScoresPath.getParent().getFileName(), StageOutputs.fingerprint(datasetSimilarityScoresPath)));
+			}
 		}
-		else {
-			List<DatasetSimilarity> datasetSimilarityScores = new ArrayList<>();
-			Files.writeString(combinedSimilarityScoresPath, "dataset_name,domain_representation_type,domain_representation_size,dataset_size,matched,overlap_coefficient\n", CREATE_AND_APPEND);
-			for (Path datasetSimilarityScoresPath : datasetSimilarityScoresPaths) {
-				if(!inputExists(datasetSimilarityScoresPath)) {
-					continue;
+		try(StageMeasurement measurement = startMeasurement(DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV, combinedSimilarityScoresPath)){
+			if(StageOutputs.isComplete(combinedSimilarityScoresPath, DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV, parameters.toString())) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+				return readDatasetSimilarityScores(combinedSimilarityScoresPath);
+			}
+			else {
+				List<DatasetSimilarity> datasetSimilarityScores = new ArrayList<>();
+				StringBuilder combinedSimilarityScores = new StringBuilder("dataset_name,domain_representation_type,domain_representation_size,dataset_size,matched,overlap_coefficient\n");
+				for (Path datasetSimilarityScoresPath : datasetSimilarityScoresPaths) {
+					if(!inputExists(datasetSimilarityScoresPath)) {
+						continue;
+					}
+					String datasetResult = Files.readAllLines(datasetSimilarityScoresPath).stream()
+							.filter(line -> line.startsWith(DATASET_DISCOVERY_SELECTED_VARIANT+","))
+							.findAny()
+							.orElseThrow();
+					String similarityScore = datasetResult.split(",")[4];
+					String datasetName = datasetSimilarityScoresPath.getParent().getFileName().toString();
+					datasetSimilarityScores.add(new DatasetSimilarity(datasetName, Double.valueOf(similarityScore)));
+					combinedSimilarityScores.append(datasetName + "," + datasetResult + "\n");
 				}
-				String datasetResult = Files.readAllLines(datasetSimilarityScoresPath).stream()
-						.filter(line -> line.startsWith(DATASET_DISCOVERY_SELECTED_VARIANT+","))
-						.findAny()
-						.orElseThrow();
-				String similarityScore = datasetResult.split(",")[4];
-				String datasetName = datasetSimilarityScoresPath.getParent().getFileName().toString();
-				datasetSimilarityScores.add(new DatasetSimilarity(datasetName, Double.valueOf(similarityScore)));
-				Files.writeString(combinedSimilarityScoresPath, datasetName + "," + datasetResult + "\n", CREATE_AND_APPEND);
+				StageOutputs.writeOutput(combinedSimilarityScoresPath, DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV, parameters.toString(), outputPath -> Files.writeString(outputPath, combinedSimilarityScores));
+				recordMeasurement(measurement, false, datasetSimilarityScoresPaths, List.of(combinedSimilarityScoresPath), datasetSimilarityScores.size());
+				return datasetSimilarityScores;
 			}
-			return datasetSimilarityScores;
 		}
 	}
 
@@ -242,30 +1153,62 @@ public class DatasetDiscovery {
 	private Set<String> discoverDatasetsSimilarToDomain() throws IOException {
 		Path domainSimilarityResultPath = outputDirectory == null ? null : outputDirectory.resolve(DATASET_DISCOVERY_OUTPUT_DATASETS_FOCUSED_ON_DOMAIN);
 		Set<DatasetSimilarity> similarDatasets;
-		if(outputExists(domainSimilarityResultPath)) {
-			similarDatasets = readSimilarDataset(domainSimilarityResultPath);
-		}
-		else {
-			List<DatasetSimilarity> sortedByDescendingSimilarityScore = new ArrayList<>(datasetSimilarityScores);
-			Set<String> addedSimilarityScoreNames = addSimilarityScores(sortedByDescendingSimilarityScore);
-			Collections.sort(sortedByDescendingSimilarityScore, Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore).reversed());
-			calculateConsecutiveDrops(sortedByDescendingSimilarityScore);
-			List<SimilarDatasetsGroup> groupedByConsecutiveSteepestDrop = groupDatasetsByConsecutiveDrop(sortedByDescendingSimilarityScore, outputDirectory);
-			List<SimilarDatasetsGroup> selectedGroups = groupedByConsecutiveSteepestDrop.subList(0, groupedByConsecutiveSteepestDrop.size()-1);
-			similarDatasets = selectedGroups.stream()
-					.flatMap(group -> group.getSimilarDatasets().stream())
-					.filter(datasetSimilarity -> !addedSimilarityScoreNames.contains(datasetSimilarity.getDatasetName()))
-					.collect(Collectors.toSet());
-			if(domainSimilarityResultPath != null) {
-				String groupHeader = "dataset_name,similarity_score\n";
-				Files.writeString(domainSimilarityResultPath, groupHeader, CREATE_AND_APPEND);
-				for(DatasetSimilarity dataset : similarDatasets) {
-					String datasetOutput = String.format("%s,%f\n", dataset.getDatasetName(), dataset.getSimilarityScore());
-					Files.writeString(domainSimilarityResultPath, datasetOutput, CREATE_AND_APPEND);
+		// The grouping is done again whenever the combined similarity scores have changed
+		String parameters = outputDirectory == null ? "" : StageOutputs.fingerprint(outputDirectory.resolve(DATASET_DISCOVERY_ALL_SIMILARITY_SCORES_CSV));
+		try(StageMeasurement measurement = startMeasurement(DATASET_DISCOVERY_OUTPUT_DATASETS_FOCUSED_ON_DOMAIN, domainSimilarityResultPath)){
+			if(domainSimilarityResultPath != null && StageOutputs.isComplete(domainSimilarityResultPath, DATASET_DISCOVERY_OUTPUT_DATASETS_FOCUSED_ON_DOMAIN, parameters)) {
+				similarDatasets = readSimilarDataset(domainSimilarityResultPath);
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+			}
+			else {
+				similarDatasets = selectSimilarDatasets(datasetSimilarityScores);
+				if(domainSimilarityResultPath != null) {
+					StringBuilder similarDatasetsOutput = new StringBuilder("dataset_name,similarity_score\n");
+					for(DatasetSimilarity dataset : similarDatasets) {
+						similarDatasetsOutput.append(String.format("%s,%f\n", dataset.getDatasetName(), dataset.getSimilarityScore()));
+					}
+					StageOutputs.writeOutput(domainSimilarityResultPath, DATASET_DISCOVERY_OUTPUT_DATASETS_FOCUSED_ON_DOMAIN, parameters, outputPath -> Files.writeString(outputPath, similarDatasetsOutput));
 				}
+				recordMeasurement(measurement, false, List.of(), domainSimilarityResultPath == null ? List.of() : List.of(domainSimilarityResultPath), similarDatasets.size());
+			}
+			return similarDatasets.stream().map(DatasetSimilarity::getDatasetName).collect(Collectors.toSet());
+		}
+	}
+
+	/**
+	 * Select the datasets that are above the steepest drops in similarity score.
+	 */
+	public static Set<DatasetSimilarity> selectSimilarDatasets(List<DatasetSimilarity> similarityScores) {
+		List<DatasetSimilarity> sortedByDescendingSimilarityScore = new ArrayList<>(similarityScores);
+		Set<String> addedSimilarityScoreNames = addSimilarityScores(sortedByDescendingSimilarityScore);
+		Collections.sort(sortedByDescendingSimilarityScore, Comparator.comparingDouble(DatasetSimilarity::getSimilarityScore).reversed());
+		calculateConsecutiveDrops(sortedByDescendingSimilarityScore);
+		List<SimilarDatasetsGroup> groupedByConsecutiveSteepestDrop = groupDatasetsByConsecutiveDrop(sortedByDescendingSimilarityScore);
+		List<SimilarDatasetsGroup> selectedGroups = groupedByConsecutiveSteepestDrop.subList(0, groupedByConsecutiveSteepestDrop.size()-1);
+		return selectedGroups.stream()
+				.flatMap(group -> group.getSimilarDatasets().stream())
+				.filter(datasetSimilarity -> !addedSimilarityScoreNames.contains(datasetSimilarity.getDatasetName()))
+				.collect(Collectors.toSet());
+	}
+
+	/**
+	 * Calculate the similarity score halfway between the lowest score of the selected datasets and the highest score of the other datasets.
+	 */
+	private static double getSplitScore(List<DatasetSimilarity> similarityScores) {
+		Set<String> selectedDatasetNames = selectSimilarDatasets(similarityScores).stream()
+				.map(DatasetSimilarity::getDatasetName)
+				.collect(Collectors.toSet());
+		double lowestSelectedScore = 1d;
+		double highestUnselectedScore = 0d;
+		for(DatasetSimilarity similarityScore : similarityScores) {
+			if(selectedDatasetNames.contains(similarityScore.getDatasetName())) {
+				lowestSelectedScore = Math.min(lowestSelectedScore, similarityScore.getSimilarityScore());
+			}
+			else {
+				highestUnselectedScore = Math.max(highestUnselectedScore, similarityScore.getSimilarityScore());
 			}
 		}
-		return similarDatasets.stream().map(DatasetSimilarity::getDatasetName).collect(Collectors.toSet());
+		return (lowestSelectedScore + highestUnselectedScore) / 2d;
 	}
 
 	private Set<DatasetSimilarity> readSimilarDataset(Path similarDatasetsPath) throws IOException {
@@ -300,7 +1243,7 @@ public class DatasetDiscovery {
 		return addedSimilarityScoreNames;
 	}
 
-	private static void calculateConsecutiveDrops(List<DatasetSimilarity> sortedByDescendingSimilarityScore) {
+	static void calculateConsecutiveDrops(List<DatasetSimilarity> sortedByDescendingSimilarityScore) {
 		for(int i = 0; i < sortedByDescendingSimilarityScore.size(); i++) {
 			DatasetSimilarity currentScore = sortedByDescendingSimilarityScore.get(i);
 			currentScore.setSimilarityOrderIndex(i);
@@ -314,7 +1257,7 @@ public class DatasetDiscovery {
 		}
 	}
 
-	private static List<SimilarDatasetsGroup> groupDatasetsByConsecutiveDrop(List<DatasetSimilarity> sortedByDescendingSimilarityScore, Path outputPath) throws IOException {
+	static List<SimilarDatasetsGroup> groupDatasetsByConsecutiveDrop(List<DatasetSimilarity> sortedByDescendingSimilarityScore) {
 		List<SimilarDatasetsGroup> groupedByConsecutiveDrop = new ArrayList<>();
 		List<DatasetSimilarity> validDropsSortedDescending = new ArrayList<>(sortedByDescendingSimilarityScore.subList(1, sortedByDescendingSimilarityScore.size()));
 		Collections.sort(validDropsSortedDescending, Comparator.comparingDouble(DatasetSimilarity::getConsecutiveDrop).reversed());
@@ -344,16 +1287,6 @@ public class DatasetDiscovery {
 		}
 	}
 
-	private boolean outputExists(Path outputPath) {
-		if(outputPath != null && outputPath.toFile().exists()) {
-			System.out.println(outputPath.toString() + " already exists. Skipping this step.");
-			return true;
-		}
-		else {
-			return false;
-		}
-	}
-
 	private void ensureOutputDirExists(Path outputDirPath) {
 		File outputFile = outputDirPath.toFile();
 		if(!outputFile.exists()) {
@@ -365,29 +1298,43 @@ public class DatasetDiscovery {
 		return outputDirPath.resolve(inputDataset.getFileName());
 	}
 
+	private String getColumnFilesParameters(Path inputPath) throws IOException {
+		// The fingerprint of the input dataset makes sure that a changed dataset is indexed and matched again
+		return "1000;" + (inputContentHashed ? StageOutputs.contentFingerprint(inputPath) : StageOutputs.fingerprint(inputPath));
+	}
+
 	private Path generateColumnFiles(Path inputPath, Path outputPath) {
 		// ----------------------------------------------------------------
 	    // GENERATE COLUMN FILES
 	    // ----------------------------------------------------------------
 	    try {
 	    	Path outputColumnsPath = outputPath.resolve(COLUMNS_DIR_NAME);
-	        if(!outputExists(outputColumnsPath)) {
-				new D4().columns(
-		                inputPath.toFile(),
-		                outputPath.resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
-		                1000,
-		                6,
-		                true,
-		                outputColumnsPath.toFile()
-		        );
+	    	List<String> outputNames = List.of(COLUMNS_DIR_NAME, COLUMNS_METADATA_FILE_NAME);
+	    	String parameters = getColumnFilesParameters(inputPath);
+	        try(StageMeasurement measurement = startMeasurement(COLUMNS_DIR_NAME, outputColumnsPath)){
+		        if(StageOutputs.areComplete(outputPath, outputNames, COLUMNS_DIR_NAME, parameters)) {
+		        	recordMeasurement(measurement, true, List.of(), List.of(), -1);
+		        }
+		        else {
+		        	StageOutputs.write(outputPath, outputNames, COLUMNS_DIR_NAME, parameters, cpuBound(targetDirectory ->
+						new D4().columns(
+				                inputPath.toFile(),
+				                targetDirectory.resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
+				                1000,
+				                6,
+				                true,
+				                targetDirectory.resolve(COLUMNS_DIR_NAME).toFile()
+				        )));
+		        	recordMeasurement(measurement, false, List.of(inputPath), List.of(outputColumnsPath, outputPath.resolve(COLUMNS_METADATA_FILE_NAME)), -1);
+		        }
+		        return outputColumnsPath;
 	        }
-	        return outputColumnsPath;
-	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
-	    	System.err.print("Generating columns failed with exception: ");
-	    	ex.printStackTrace();
-	        System.exit(-1);
+	    } catch (java.lang.InterruptedException ex) {
+	    	Thread.currentThread().interrupt();
+	    	throw new IllegalStateException("Generating columns was interrupted", ex);
+	    } catch (java.io.IOException ex) {
+	    	throw new IllegalStateException("Generating columns failed with exception", ex);
 	    }
-	    return null;
 	}
 
 	private Path generateTermIndex(Path columnsPath) {
@@ -395,36 +1342,378 @@ public class DatasetDiscovery {
 	    // GENERATE TERM INDEX
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputTermIndex = columnsPath.getParent().resolve(TERM_INDEX_FILE_NAME);
-	        if(!outputExists(outputTermIndex)) {
-				new D4().termIndex(
-						columnsPath.toFile(),
-		                Threshold.getConstraint("GT0.5"),
-		                10000000,
-		                false,
-		                6,
-		                true,
-		                outputTermIndex.toFile()
-		        );
+	    	String termIndexFileName = intermediateCodec.resolveFileName(columnsPath.getParent(), TERM_INDEX_FILE_NAME);
+	        Path outputTermIndex = columnsPath.getParent().resolve(termIndexFileName);
+	        String parameters = "GT0.5,10000000,false;" + StageOutputs.fingerprint(columnsPath);
+	        try(StageMeasurement measurement = startMeasurement("term-index", outputTermIndex)){
+		        if(StageOutputs.isComplete(outputTermIndex, TERM_INDEX_FILE_NAME, parameters)) {
+		        	recordMeasurement(measurement, true, List.of(), List.of(), -1);
+		        }
+		        else {
+		        	StageOutputs.write(columnsPath.getParent(), List.of(termIndexFileName), TERM_INDEX_FILE_NAME, parameters, cpuBound(targetDirectory ->
+						new D4().termIndex(
+								columnsPath.toFile(),
+				                Threshold.getConstraint("GT0.5"),
+				                10000000,
+				                false,
+				                6,
+				                true,
+				                targetDirectory.resolve(termIndexFileName).toFile()
+				        )));
+		        	recordMeasurement(measurement, false, List.of(columnsPath), List.of(outputTermIndex), -1);
+		        }
+		        return outputTermIndex;
+	        }
+	    } catch (java.lang.InterruptedException ex) {
+	    	Thread.currentThread().interrupt();
+	    	throw new IllegalStateException("Generating term index was interrupted", ex);
+	    } catch (java.io.IOException ex) {
+	    	throw new IllegalStateException("Generating term index failed with exception", ex);
+	    }
+	}
+
+	/**
+	 * Generate the term index and the columns metadata of an input dataset, without keeping its column files.
+	 *
+	 * D4 can only create a term index from column files, so these are still written and read back in full. This does not avoid that I/O,
+	 * it only avoids keeping the column files. They are written to a scratch directory, or to the partial output directory if none is configured,
+	 * and removed as soon as the term index has been generated. The term index then depends on the input dataset itself, instead of on its column files.
+	 */
+	private Path generateTermIndexWithoutColumnFiles(Path inputPath, Path outputPath) {
+		// ----------------------------------------------------------------
+	    // GENERATE TERM INDEX WITHOUT RETAINING COLUMN FILES
+	    // ----------------------------------------------------------------
+	    try {
+	    	String termIndexFileName = intermediateCodec.resolveFileName(outputPath, TERM_INDEX_FILE_NAME);
+	        Path outputTermIndex = outputPath.resolve(termIndexFileName);
+	        List<String> outputNames = List.of(termIndexFileName, COLUMNS_METADATA_FILE_NAME);
+	        String parameters = "GT0.5,10000000,false;" + getColumnFilesParameters(inputPath);
+	        try(StageMeasurement measurement = startMeasurement("term-index", outputTermIndex)){
+		        if(StageOutputs.areComplete(outputPath, outputNames, TERM_INDEX_FILE_NAME, parameters)) {
+		        	recordMeasurement(measurement, true, List.of(), List.of(), -1);
+		        }
+		        else {
+		        	StageOutputs.write(outputPath, outputNames, TERM_INDEX_FILE_NAME, parameters, cpuBound(targetDirectory -> {
+		        		Path columnsPath = scratchDirectory == null ?
+		        				targetDirectory.resolve(COLUMNS_DIR_NAME) :
+		        				Files.createTempDirectory(Files.createDirectories(scratchDirectory), inputPath.getFileName() + "-" + COLUMNS_DIR_NAME + "-");
+		        		try {
+		        			new D4().columns(
+		        					inputPath.toFile(),
+		        					targetDirectory.resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
+		        					1000,
+		        					6,
+		        					true,
+		        					columnsPath.toFile());
+		        			new D4().termIndex(
+		        					columnsPath.toFile(),
+		        					Threshold.getConstraint("GT0.5"),
+		        					10000000,
+		        					false,
+		        					6,
+		        					true,
+		        					targetDirectory.resolve(termIndexFileName).toFile());
+		        		} finally {
+		        			// Removed once the term index has been generated, so they are not kept with the outputs and not synced with them.
+		        			// D4 has already written and closed them, so the operating system may have flushed them to disk by now.
+		        			StageOutputs.delete(columnsPath);
+		        		}
+		        	}));
+		        	recordMeasurement(measurement, false, List.of(inputPath), List.of(outputTermIndex, outputPath.resolve(COLUMNS_METADATA_FILE_NAME)), -1);
+		        }
+		        return outputTermIndex;
 	        }
-	        return outputTermIndex;
-	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
-	    	System.err.print("Generating term index failed with exception: ");
-	    	ex.printStackTrace();
-	        System.exit(-1);
+	    } catch (java.lang.InterruptedException ex) {
+	    	Thread.currentThread().interrupt();
+	    	throw new IllegalStateException("Generating term index was interrupted", ex);
+	    } catch (java.io.IOException ex) {
+	    	throw new IllegalStateException("Generating term index failed with exception", ex);
 	    }
-	    return null;
+	}
+
+	/**
+	 * Wrap a stage that runs D4, so at most as many of these stages as the concurrency run at the same time.
+	 *
+	 * This only makes a difference when the input datasets are processed on virtual threads, since otherwise no more input datasets are processed at the same time.
+	 */
+	private StageAction cpuBound(StageAction action) {
+		return targetDirectory -> {
+			Semaphore permits = cpuBoundStagePermits;
+			permits.acquire();
+			try {
+				action.run(targetDirectory);
+			} finally {
+				permits.release();
+			}
+		};
+	}
+
+	private StageMeasurement startMeasurement(String stageName, Path output) {
+		return telemetrySink == null ? null : StageMeasurement.start(PIPELINE_NAME, stageName, output);
+	}
+
+	/**
+	 * Send the telemetry of a stage to the telemetry sink, if one is configured.
+	 *
+	 * The bytes read and written are the sizes of the inputs and outputs of the stage, which are not counted when the outputs were reused.
+	 */
+	private void recordMeasurement(StageMeasurement measurement, boolean reused, Collection<Path> inputs, Collection<Path> outputs, long items) throws IOException {
+		if(measurement == null) {
+			return;
+		}
+		long bytesRead = 0;
+		for(Path input : inputs) {
+			bytesRead += StageOutputs.size(input);
+		}
+		long bytesWritten = 0;
+		for(Path output : outputs) {
+			bytesWritten += StageOutputs.size(output);
+		}
+		telemetrySink.record(measurement.finish(reused, bytesRead, bytesWritten, items));
 	}
 
 	public boolean isMatchedTermsLogged() {
 		return matchedTermsLogged;
 	}
 
+	/**
+	 * Set whether the matched terms of each input dataset are written to a gzipped TSV file in its output directory.
+	 *
+	 * Each line contains a matched term and the names of the column domains it was matched with.
+	 */
 	public DatasetDiscovery matchedTermsLogged(boolean matchedTermsLogged) {
 		this.matchedTermsLogged = matchedTermsLogged;
 		return this;
 	}
 
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Set the maximum number of input datasets that are processed in parallel.
+	 *
+	 * The similarity scores are combined in the order of the input datasets, regardless of this setting.
+	 */
+	public DatasetDiscovery concurrency(int concurrency) {
+		if(concurrency < 1) {
+			throw new IllegalArgumentException("The concurrency must be at least 1, but was " + concurrency);
+		}
+		this.concurrency = concurrency;
+		this.cpuBoundStagePermits = new Semaphore(concurrency);
+		return this;
+	}
+
+	public boolean isVirtualThreadsUsed() {
+		return virtualThreadsUsed;
+	}
+
+	/**
+	 * Set whether each input dataset is processed on its own virtual thread, which requires Java 21 or later.
+	 *
+	 * Input datasets then wait on file I/O at the same time, while their D4 and matching stages are still limited to the concurrency.
+	 * On earlier versions of Java, this falls back to a pool of as many platform threads as the concurrency.
+	 */
+	public DatasetDiscovery virtualThreadsUsed(boolean virtualThreadsUsed) {
+		this.virtualThreadsUsed = virtualThreadsUsed;
+		return this;
+	}
+
+	public String getMatchingStrategy() {
+		return matchingStrategy;
+	}
+
+	public DatasetDiscovery matchingStrategy(String matchingStrategy) {
+		if(!MATCHING_IN_MEMORY.equals(matchingStrategy) && !MATCHING_STREAMING.equals(matchingStrategy) && !MATCHING_SORT_MERGE.equals(matchingStrategy)) {
+			throw new IllegalArgumentException("Unknown matching strategy: " + matchingStrategy);
+		}
+		this.matchingStrategy = matchingStrategy;
+		return this;
+	}
+
+	public long getSortMemoryBudget() {
+		return sortMemoryBudget;
+	}
+
+	/**
+	 * Set the number of bytes of terms that are kept in memory while they are sorted for MATCHING_SORT_MERGE.
+	 *
+	 * Terms that do not fit in this budget are written to disk, so a smaller budget only makes sorting slower.
+	 */
+	public DatasetDiscovery sortMemoryBudget(long sortMemoryBudget) {
+		if(sortMemoryBudget < 1024 * 1024) {
+			throw new IllegalArgumentException("The memory budget for sorting must be at least 1 MB, but was " + sortMemoryBudget);
+		}
+		this.sortMemoryBudget = sortMemoryBudget;
+		return this;
+	}
+
+	public boolean isDomainTermsOffHeap() {
+		return domainTermsOffHeap;
+	}
+
+	/**
+	 * Set whether the dataset domain terms are copied from the term dictionary into an off-heap hash table when they are loaded.
+	 *
+	 * This uses more native memory than the memory-mapped term dictionary, but each lookup only probes the hash table instead of searching the dictionary.
+	 */
+	public DatasetDiscovery domainTermsOffHeap(boolean domainTermsOffHeap) {
+		this.domainTermsOffHeap = domainTermsOffHeap;
+		return this;
+	}
+
+	public double getBloomFilterFalsePositiveRate() {
+		return bloomFilterFalsePositiveRate;
+	}
+
+	/**
+	 * Set the false-positive rate of the Bloom filter that rejects most non-matching terms before the exact lookup.
+	 *
+	 * The Bloom filter is stored next to the dataset domain terms so it can be reused. Use 0 to disable it.
+	 */
+	public DatasetDiscovery bloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate) {
+		if(bloomFilterFalsePositiveRate < 0d || bloomFilterFalsePositiveRate >= 1d) {
+			throw new IllegalArgumentException("The false-positive rate must be at least 0 and less than 1, but was " + bloomFilterFalsePositiveRate);
+		}
+		this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+		return this;
+	}
+
+	/**
+	 * Retrieve how often the Bloom filter rejected a term, and how often it let a term through that did not match.
+	 */
+	public synchronized BloomFilterStatistics getBloomFilterStatistics() {
+		if(!(datasetDomainTerms instanceof BloomFilteredDomainTermSet)) {
+			throw new IllegalStateException("The Bloom filter statistics are only available after dataset discovery has been performed with a false-positive rate for the Bloom filter.");
+		}
+		return ((BloomFilteredDomainTermSet) datasetDomainTerms).getStatistics();
+	}
+
+	public boolean isInputContentHashed() {
+		return inputContentHashed;
+	}
+
+	/**
+	 * Set whether changes to an input dataset are detected by hashing the content of its files.
+	 *
+	 * By default, only the names, sizes and modification times of its files are compared, which is much cheaper.
+	 */
+	public DatasetDiscovery inputContentHashed(boolean inputContentHashed) {
+		this.inputContentHashed = inputContentHashed;
+		return this;
+	}
+
+	public boolean isColumnFilesRetained() {
+		return columnFilesRetained;
+	}
+
+	/**
+	 * Set whether the column files of each input dataset are kept in the output directory.
+	 *
+	 * Dataset discovery only needs the column files to generate the term index of an input dataset. When they are not retained,
+	 * they are written to the scratch directory and removed once the term index has been generated, so they do not take up disk space
+	 * for every input dataset. Only the columns metadata is then kept next to the term index.
+	 */
+	public DatasetDiscovery columnFilesRetained(boolean columnFilesRetained) {
+		this.columnFilesRetained = columnFilesRetained;
+		return this;
+	}
+
+	public Path getScratchDirectory() {
+		return scratchDirectory;
+	}
+
+	/**
+	 * Set the directory where column files are written when they are not retained, e.g. a fast local disk or a RAM disk.
+	 *
+	 * By default, they are written to a partial directory next to the term index.
+	 */
+	public DatasetDiscovery scratchDirectory(Path scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+		return this;
+	}
+
+	public IntermediateCodec getIntermediateCodec() {
+		return intermediateCodec;
+	}
+
+	/**
+	 * Set the compression of the term index of each input dataset and of the matched terms.
+	 *
+	 * Term indexes that were already generated with another codec are still reused.
+	 */
+	public DatasetDiscovery intermediateCodec(IntermediateCodec intermediateCodec) {
+		this.intermediateCodec = intermediateCodec;
+		return this;
+	}
+
+	public int getSketchSize() {
+		return sketchSize;
+	}
+
+	/**
+	 * Set the number of hashes in the sketches from which the similarity scores are estimated. Use 0 to calculate all similarity scores exactly.
+	 *
+	 * Only the input datasets whose estimated similarity score is too close to the split between similar and other datasets are matched exactly.
+	 * The scores of the other input datasets are estimates, which are stored in a separate CSV file for each dataset.
+	 */
+	public DatasetDiscovery sketchSize(int sketchSize) {
+		if(sketchSize < 0) {
+			throw new IllegalArgumentException("The sketch size must be at least 0, but was " + sketchSize);
+		}
+		this.sketchSize = sketchSize;
+		return this;
+	}
+
+	public boolean isInvertedIndexUsed() {
+		return invertedIndexUsed;
+	}
+
+	/**
+	 * Set whether the input datasets are matched through an inverted index, which maps each term to the input datasets that contain it.
+	 *
+	 * Building the inverted index reads the term index of every input dataset once. After that, matching other dataset domain terms
+	 * against the same input datasets, with the same output directory, only requires a lookup for each of those dataset domain terms.
+	 * This takes precedence over the sketch size.
+	 */
+	public DatasetDiscovery invertedIndexUsed(boolean invertedIndexUsed) {
+		this.invertedIndexUsed = invertedIndexUsed;
+		return this;
+	}
+
+	public int getRowSampleSize() {
+		return rowSampleSize;
+	}
+
+	/**
+	 * Set the number of rows that are sampled from each table of an input dataset, to estimate its similarity score from the terms in those rows.
+	 *
+	 * An input dataset whose estimated similarity score is too close to the split between similar and other datasets is sampled again with
+	 * ROW_SAMPLE_REFINEMENT_FACTOR times more rows, and matched exactly if it is still too close. Only those input datasets need a term index.
+	 * The inverted index and the sketch size take precedence over this.
+	 */
+	public DatasetDiscovery rowSampleSize(int rowSampleSize) {
+		if(rowSampleSize < 0) {
+			throw new IllegalArgumentException("The row sample size must be at least 0, but was " + rowSampleSize);
+		}
+		this.rowSampleSize = rowSampleSize;
+		return this;
+	}
+
+	public TelemetrySink getTelemetrySink() {
+		return telemetrySink;
+	}
+
+	/**
+	 * Record the wall time, CPU time, GC time, peak heap usage, and bytes read and written of each stage in the given sink.
+	 *
+	 * The stages of different input datasets may run concurrently, so the sink must be thread-safe.
+	 */
+	public DatasetDiscovery telemetrySink(TelemetrySink telemetrySink) {
+		this.telemetrySink = telemetrySink;
+		return this;
+	}
+
 	public List<DatasetSimilarity> getDatasetSimilarityScores() {
 		if(datasetSimilarityScores == null) {
 			throw new IllegalStateException("Dataset discovery has not been performed yet. The similarity scores are only available after discoverDatasetsFocusedOnSameDomain() has been run.");
@@ -432,4 +1721,32 @@ public class DatasetDiscovery {
 		return datasetSimilarityScores;
 
 	}
+
+	/**
+	 * Retrieve the input datasets that failed during the last dataset discovery, mapped to the cause of their failure.
+	 *
+	 * These datasets are left out of the similarity scores, the remaining datasets are still processed.
+	 */
+	public Map<String, Throwable> getFailedDatasets() {
+		if(failedDatasets == null) {
+			throw new IllegalStateException("Dataset discovery has not been performed yet. The failed datasets are only available after discoverDatasetsFocusedOnSameDomain() has been run.");
+		}
+		return failedDatasets;
+	}
+
+	/**
+	 * A task that is run for a single input dataset.
+	 */
+	@FunctionalInterface
+	private interface InputDatasetTask<T> {
+		T run(Path inputDataset) throws IOException;
+	}
+
+	/**
+	 * A task that refines the estimated similarity of a single input dataset, where refinement counts how often that input dataset has been refined, starting at 1.
+	 */
+	@FunctionalInterface
+	private interface RefinementTask {
+		MatchingResult run(Path inputDataset, int refinement) throws IOException;
+	}
 }
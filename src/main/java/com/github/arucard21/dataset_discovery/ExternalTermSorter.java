@@ -0,0 +1,241 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+
+/**
+ * Sorts terms into a file on disk, while only keeping as many terms in memory as fit in a memory budget.
+ *
+ * The terms are buffered until the budget is used up, after which they are sorted and written to a run on disk.
+ * Those runs are then merged into a single file that contains each term only once, in the order of their UTF-8 bytes.
+ * When there are more runs than can be read at the same time within the budget, they are merged in several passes.
+ *
+ * Each term in a sorted file is stored as its length followed by its UTF-8 bytes.
+ */
+class ExternalTermSorter {
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The estimated memory of a buffered term besides its bytes, which is the header of its array and the reference to it.
+	 */
+	private static final long TERM_OVERHEAD = 40;
+
+	private final long memoryBudget;
+	private final Path workDirectory;
+	private final List<byte[]> buffer = new ArrayList<>();
+	private final List<Path> runs = new ArrayList<>();
+	private long bufferedBytes = 0;
+
+	/**
+	 * @param workDirectory the directory where the runs are written, which must exist. The runs are deleted once they are merged.
+	 */
+	ExternalTermSorter(long memoryBudget, Path workDirectory) {
+		this.memoryBudget = memoryBudget;
+		this.workDirectory = workDirectory;
+	}
+
+	void add(String term) throws IOException {
+		byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+		buffer.add(bytes);
+		bufferedBytes += bytes.length + TERM_OVERHEAD;
+		if(bufferedBytes >= memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * Write all added terms to the given file, sorted and without duplicates.
+	 */
+	void sortTo(Path output) throws IOException {
+		if(runs.isEmpty()) {
+			writeRun(output);
+			return;
+		}
+		spill();
+		int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, memoryBudget / BUFFER_SIZE - 1));
+		List<Path> remainingRuns = new ArrayList<>(runs);
+		while(remainingRuns.size() > fanIn) {
+			List<Path> mergedRuns = new ArrayList<>();
+			for(int i = 0; i < remainingRuns.size(); i += fanIn) {
+				List<Path> group = remainingRuns.subList(i, Math.min(i + fanIn, remainingRuns.size()));
+				mergedRuns.add(merge(group, Files.createTempFile(workDirectory, "run-", ".sorted")));
+			}
+			remainingRuns = mergedRuns;
+		}
+		merge(remainingRuns, output);
+		runs.clear();
+	}
+
+	private void spill() throws IOException {
+		if(buffer.isEmpty()) {
+			return;
+		}
+		runs.add(writeRun(Files.createTempFile(workDirectory, "run-", ".sorted")));
+	}
+
+	private Path writeRun(Path run) throws IOException {
+		buffer.sort(Arrays::compareUnsigned);
+		try(SortedTermWriter writer = new SortedTermWriter(run)){
+			for(byte[] term : buffer) {
+				writer.write(term);
+			}
+		}
+		buffer.clear();
+		bufferedBytes = 0;
+		return run;
+	}
+
+	/**
+	 * Merge the given runs into the given output and delete them.
+	 */
+	private static Path merge(List<Path> runs, Path output) throws IOException {
+		PriorityQueue<SortedTermReader> readers = new PriorityQueue<>((first, second) -> Arrays.compareUnsigned(first.current(), second.current()));
+		try(SortedTermWriter writer = new SortedTermWriter(output)){
+			for(Path run : runs) {
+				SortedTermReader reader = new SortedTermReader(run);
+				if(reader.next() != null) {
+					readers.add(reader);
+				}
+				else {
+					reader.close();
+				}
+			}
+			while(!readers.isEmpty()) {
+				SortedTermReader reader = readers.poll();
+				writer.write(reader.current());
+				if(reader.next() != null) {
+					readers.add(reader);
+				}
+				else {
+					reader.close();
+				}
+			}
+		}
+		finally {
+			for(SortedTermReader reader : readers) {
+				reader.close();
+			}
+		}
+		for(Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		return output;
+	}
+
+	/**
+	 * Count the terms that occur in both sorted files by reading them side by side, so neither needs to be held in memory.
+	 *
+	 * @param matchedTermConsumer receives each matched term, or null if the matched terms are not needed.
+	 */
+	static MatchingResult mergeJoin(Path sortedDatasetTerms, Path sortedDomainTerms, Consumer<String> matchedTermConsumer) throws IOException {
+		long matched = 0;
+		long datasetSize = 0;
+		long domainSize = 0;
+		try(SortedTermReader datasetTerms = new SortedTermReader(sortedDatasetTerms);
+				SortedTermReader domainTerms = new SortedTermReader(sortedDomainTerms)){
+			byte[] datasetTerm = datasetTerms.next();
+			byte[] domainTerm = domainTerms.next();
+			while(datasetTerm != null && domainTerm != null) {
+				int comparison = Arrays.compareUnsigned(datasetTerm, domainTerm);
+				if(comparison == 0) {
+					matched++;
+					if(matchedTermConsumer != null) {
+						matchedTermConsumer.accept(new String(datasetTerm, StandardCharsets.UTF_8));
+					}
+				}
+				if(comparison <= 0) {
+					datasetSize++;
+					datasetTerm = datasetTerms.next();
+				}
+				if(comparison >= 0) {
+					domainSize++;
+					domainTerm = domainTerms.next();
+				}
+			}
+			for(; datasetTerm != null; datasetTerm = datasetTerms.next()) {
+				datasetSize++;
+			}
+			for(; domainTerm != null; domainTerm = domainTerms.next()) {
+				domainSize++;
+			}
+		}
+		return new MatchingResult(matched, domainSize, datasetSize);
+	}
+
+	/**
+	 * Writes sorted terms to a file, skipping each term that is equal to the one before it.
+	 */
+	private static class SortedTermWriter implements Closeable {
+		private final DataOutputStream output;
+		private byte[] previous;
+
+		SortedTermWriter(Path path) throws IOException {
+			output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+		}
+
+		void write(byte[] term) throws IOException {
+			if(previous != null && Arrays.equals(previous, term)) {
+				return;
+			}
+			output.writeInt(term.length);
+			output.write(term);
+			previous = term;
+		}
+
+		@Override
+		public void close() throws IOException {
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads the terms in a sorted file one at a time.
+	 */
+	private static class SortedTermReader implements Closeable {
+		private final DataInputStream input;
+		private byte[] current;
+
+		SortedTermReader(Path path) throws IOException {
+			input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+		}
+
+		/**
+		 * Read the next term, or return null at the end of the file.
+		 */
+		byte[] next() throws IOException {
+			int length;
+			try {
+				length = input.readInt();
+			} catch (EOFException e) {
+				current = null;
+				return null;
+			}
+			current = new byte[length];
+			input.readFully(current);
+			return current;
+		}
+
+		byte[] current() {
+			return current;
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.dataset_domain_terms.DomainTermSet;
+import com.github.arucard21.dataset_domain_terms.TermDictionary;
+
+import org.opendata.db.term.Term;
+import org.opendata.db.term.TermConsumer;
+import org.opendata.db.term.TermIndexReader;
+
+/**
+ * An on-disk inverted index that maps each term to the datasets that contain it.
+ *
+ * The index directory contains a list of the datasets with their number of terms, a term dictionary with all terms
+ * and, for each term in the order of that dictionary, the offset of its posting list. Each posting list is a count
+ * followed by the delta-encoded identifiers of the datasets, all written as variable-length integers.
+ *
+ * The term dictionary also serves as a shared dictionary that assigns a dense identifier to each term, its ordinal.
+ * The terms of each dataset are stored as a compressed bitmap of those identifiers, at the offset that is listed with that dataset.
+ * A domain representation that is converted to such a bitmap once is matched by looking up the posting list of each
+ * domain term, and only the bitmaps of the datasets in those posting lists are read and intersected with it.
+ * So matching does not read the term index of each dataset and its cost depends on the datasets that share terms with the domain representation.
+ */
+public class InvertedIndex {
+	public static final String DATASETS_FILE_NAME = "datasets.tsv";
+	public static final String TERMS_FILE_NAME = "terms.dict";
+	public static final String POSTINGS_FILE_NAME = "postings.bin";
+	public static final String POSTING_OFFSETS_FILE_NAME = "postings.offsets";
+	public static final String DATASET_BITMAPS_FILE_NAME = "datasets.bitmaps";
+	/**
+	 * The version of the files in the index directory, which changes whenever an existing index can no longer be opened.
+	 */
+	public static final int FORMAT_VERSION = 4;
+	/**
+	 * The number of term occurrences that are sorted in memory before they are written to a sorted run on disk.
+	 */
+	private static final int RUN_SIZE = 1 << 20;
+
+	private final List<String> datasetNames;
+	private final long[] datasetSizes;
+	private final long[] datasetBitmapOffsets;
+	private final TermDictionary terms;
+	private final MappedByteBuffer postings;
+	private final MappedByteBuffer postingOffsets;
+	private final MappedByteBuffer datasetBitmaps;
+
+	private InvertedIndex(List<String> datasetNames, long[] datasetSizes, long[] datasetBitmapOffsets, TermDictionary terms, MappedByteBuffer postings, MappedByteBuffer postingOffsets, MappedByteBuffer datasetBitmaps) {
+		this.datasetNames = datasetNames;
+		this.datasetSizes = datasetSizes;
+		this.datasetBitmapOffsets = datasetBitmapOffsets;
+		this.terms = terms;
+		this.postings = postings;
+		this.postingOffsets = postingOffsets;
+		this.datasetBitmaps = datasetBitmaps;
+	}
+
+	/**
+	 * Open an existing inverted index.
+	 */
+	public static InvertedIndex open(Path indexDirectory) throws IOException {
+		List<String> datasetNames = new ArrayList<>();
+		List<String> lines = Files.readAllLines(indexDirectory.resolve(DATASETS_FILE_NAME));
+		long[] datasetSizes = new long[lines.size()];
+		long[] datasetBitmapOffsets = new long[lines.size()];
+		for(int i = 0; i < lines.size(); i++) {
+			String[] values = lines.get(i).split("\t");
+			datasetNames.add(values[0]);
+			datasetSizes[i] = Long.parseLong(values[1]);
+			datasetBitmapOffsets[i] = Long.parseLong(values[2]);
+		}
+		return new InvertedIndex(
+				datasetNames,
+				datasetSizes,
+				datasetBitmapOffsets,
+				TermDictionary.open(indexDirectory.resolve(TERMS_FILE_NAME)),
+				map(indexDirectory.resolve(POSTINGS_FILE_NAME)),
+				map(indexDirectory.resolve(POSTING_OFFSETS_FILE_NAME)),
+				map(indexDirectory.resolve(DATASET_BITMAPS_FILE_NAME)));
+	}
+
+	/**
+	 * Build an inverted index from the term indexes of the given datasets.
+	 *
+	 * The term occurrences are sorted in runs of a fixed size, which are then merged, so the memory usage does not depend on the number of datasets.
+	 *
+	 * @param termIndexPaths the term index of each dataset, mapped by the name of that dataset.
+	 */
+	public static void build(Map<String, Path> termIndexPaths, Path indexDirectory) throws IOException {
+		Files.createDirectories(indexDirectory);
+		Path runsDirectory = Files.createTempDirectory(indexDirectory, "runs-");
+		try {
+			List<Path> runs = new ArrayList<>();
+			List<TermPosting> run = new ArrayList<>();
+			List<String> datasets = new ArrayList<>();
+			int dataset = 0;
+			for(Map.Entry<String, Path> termIndex : termIndexPaths.entrySet()) {
+				int datasetId = dataset++;
+				long[] datasetSize = new long[1];
+				TermConsumer consumer = new TermConsumer() {
+					@Override
+					public void open() {}
+
+					@Override
+					public void consume(Term term) {
+						datasetSize[0]++;
+						run.add(new TermPosting(term.name().getBytes(StandardCharsets.UTF_8), datasetId));
+						if(run.size() == RUN_SIZE) {
+							runs.add(writeRun(run, runsDirectory, runs.size()));
+						}
+					}
+
+					@Override
+					public void close() {}
+				};
+				new TermIndexReader(termIndex.getValue().toFile()).read(consumer);
+				datasets.add(String.format("%s\t%d", termIndex.getKey(), datasetSize[0]));
+			}
+			if(!run.isEmpty()) {
+				runs.add(writeRun(run, runsDirectory, runs.size()));
+			}
+			try(PostingsWriter postingsWriter = new PostingsWriter(runs, indexDirectory, termIndexPaths.size())){
+				TermDictionary.write(postingsWriter, indexDirectory.resolve(TERMS_FILE_NAME));
+				try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexDirectory.resolve(DATASET_BITMAPS_FILE_NAME))))){
+					for(int i = 0; i < datasets.size(); i++) {
+						// The offset of each bitmap is listed with its dataset, so it can be read without reading the bitmaps before it
+						datasets.set(i, datasets.get(i) + "\t" + output.size());
+						postingsWriter.datasetBitmaps.get(i).build().write(output);
+					}
+				}
+			}
+			Files.write(indexDirectory.resolve(DATASETS_FILE_NAME), datasets);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			try(Stream<Path> paths = Files.walk(runsDirectory)){
+				for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Convert the given domain terms to a bitmap of their identifiers in the term dictionary of this index.
+	 *
+	 * Domain terms that do not occur in any dataset are left out, since they can not be matched.
+	 */
+	public TermBitmap toBitmap(DomainTermSet domainTerms) {
+		IntStream.Builder identifiers = IntStream.builder();
+		domainTerms.forEach(domainTerm -> {
+			long ordinal = terms.ordinalOf(domainTerm.getBytes(StandardCharsets.UTF_8));
+			if(ordinal >= 0) {
+				identifiers.accept(Math.toIntExact(ordinal));
+			}
+		});
+		int[] domainIdentifiers = identifiers.build().toArray();
+		return TermBitmap.of(domainIdentifiers, domainIdentifiers.length);
+	}
+
+	/**
+	 * Count for each dataset how many of the identifiers in the given bitmap of domain terms it contains.
+	 *
+	 * The posting lists of the domain terms determine which datasets contain any of them, so only the bitmaps of those datasets are read.
+	 *
+	 * @param domainBitmap the bitmap of the domain terms, as created by toBitmap(DomainTermSet) for this index.
+	 * @param domainSize the number of domain terms, including those that do not occur in any dataset.
+	 * @return the matching result for each dataset, mapped by the name of that dataset, in the order in which the datasets were indexed.
+	 */
+	public Map<String, MatchingResult> match(TermBitmap domainBitmap, long domainSize) throws IOException {
+		boolean[] candidates = new boolean[datasetNames.size()];
+		int[] remaining = {candidates.length};
+		domainBitmap.forEach(identifier -> {
+			// Once every dataset is a candidate, the remaining posting lists can not add any
+			if(remaining[0] == 0) {
+				return;
+			}
+			ByteBuffer postingList = postings.duplicate();
+			postingList.position(Math.toIntExact(postingOffsets.getLong(Math.toIntExact((long) identifier * Long.BYTES))));
+			int count = readVarInt(postingList);
+			int datasetId = 0;
+			for(int i = 0; i < count; i++) {
+				datasetId += readVarInt(postingList);
+				if(!candidates[datasetId]) {
+					candidates[datasetId] = true;
+					remaining[0]--;
+				}
+			}
+		});
+		Map<String, MatchingResult> matchingResults = new LinkedHashMap<>();
+		for(int i = 0; i < datasetNames.size(); i++) {
+			long matched = 0;
+			if(candidates[i]) {
+				ByteBuffer datasetBitmap = datasetBitmaps.duplicate();
+				datasetBitmap.position(Math.toIntExact(datasetBitmapOffsets[i]));
+				matched = TermBitmap.read(datasetBitmap).andCardinality(domainBitmap);
+			}
+			matchingResults.put(datasetNames.get(i), new MatchingResult(matched, domainSize, datasetSizes[i]));
+		}
+		return matchingResults;
+	}
+
+	public List<String> getDatasetNames() {
+		return datasetNames;
+	}
+
+	public long getTermCount() {
+		return terms.size();
+	}
+
+	private static Path writeRun(List<TermPosting> run, Path runsDirectory, int runNumber) {
+		run.sort(TermPosting.ORDER);
+		Path runPath = runsDirectory.resolve("run-" + runNumber);
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runPath)))){
+			for(TermPosting posting : run) {
+				writeVarInt(output, posting.term.length);
+				output.write(posting.term);
+				writeVarInt(output, posting.dataset);
+			}
+		} catch (IOException e) {
+			// Thrown from the TermConsumer, so it is unwrapped again in build()
+			throw new UncheckedIOException(e);
+		}
+		run.clear();
+		return runPath;
+	}
+
+	private static MappedByteBuffer map(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format("The file %s is too large to be memory-mapped", path));
+			}
+			return channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	private static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = buffer.get();
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		} while((current & 0x80) != 0);
+		return value;
+	}
+
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream input) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int current;
+		do {
+			current = input.readUnsignedByte();
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		} while((current & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * A single occurrence of a term in a dataset.
+	 */
+	private static class TermPosting {
+		static final Comparator<TermPosting> ORDER = Comparator
+				.<TermPosting, byte[]>comparing(posting -> posting.term, Arrays::compareUnsigned)
+				.thenComparingInt(posting -> posting.dataset);
+
+		final byte[] term;
+		final int dataset;
+
+		TermPosting(byte[] term, int dataset) {
+			this.term = term;
+			this.dataset = dataset;
+		}
+	}
+
+	/**
+	 * A sorted run that is read back while merging, with the posting it is currently at.
+	 */
+	private static class RunReader {
+		final DataInputStream input;
+		TermPosting current;
+
+		RunReader(Path runPath) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runPath)));
+			advance();
+		}
+
+		void advance() throws IOException {
+			try {
+				byte[] term = new byte[readVarInt(input)];
+				input.readFully(term);
+				current = new TermPosting(term, readVarInt(input));
+			} catch (EOFException e) {
+				current = null;
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Merges the sorted runs and provides each distinct term to the term dictionary, in sorted order.
+	 *
+	 * The posting list of each term is written while it is provided, so its position matches the ordinal of that term in the term dictionary.
+	 * That ordinal is also added to the bitmap of each dataset that contains the term.
+	 */
+	private static class PostingsWriter implements Iterator<byte[]>, AutoCloseable {
+		private final PriorityQueue<RunReader> runs = new PriorityQueue<>(Comparator.comparing(run -> run.current, TermPosting.ORDER));
+		private final DataOutputStream postings;
+		private final DataOutputStream postingOffsets;
+		final List<TermBitmap.Builder> datasetBitmaps = new ArrayList<>();
+		private final List<Integer> datasets = new ArrayList<>();
+		private int ordinal = 0;
+
+		PostingsWriter(List<Path> runPaths, Path indexDirectory, int datasetCount) throws IOException {
+			for(int i = 0; i < datasetCount; i++) {
+				datasetBitmaps.add(new TermBitmap.Builder());
+			}
+			for(Path runPath : runPaths) {
+				RunReader run = new RunReader(runPath);
+				if(run.current != null) {
+					runs.add(run);
+				}
+			}
+			this.postings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexDirectory.resolve(POSTINGS_FILE_NAME))));
+			this.postingOffsets = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexDirectory.resolve(POSTING_OFFSETS_FILE_NAME))));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !runs.isEmpty();
+		}
+
+		@Override
+		public byte[] next() {
+			if(runs.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			byte[] term = runs.peek().current.term;
+			datasets.clear();
+			try {
+				while(!runs.isEmpty() && Arrays.equals(runs.peek().current.term, term)) {
+					RunReader run = runs.poll();
+					int dataset = run.current.dataset;
+					// The postings of a term are sorted by dataset, so a dataset that contains the term more than once is only added once
+					if(datasets.isEmpty() || datasets.get(datasets.size() - 1) != dataset) {
+						datasets.add(dataset);
+						datasetBitmaps.get(dataset).add(ordinal);
+					}
+					run.advance();
+					if(run.current != null) {
+						runs.add(run);
+					}
+				}
+				postingOffsets.writeLong(postings.size());
+				writeVarInt(postings, datasets.size());
+				int previous = 0;
+				for(int dataset : datasets) {
+					writeVarInt(postings, dataset - previous);
+					previous = dataset;
+				}
+				ordinal++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return term;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for(RunReader run : runs) {
+				run.input.close();
+			}
+			postings.close();
+			postingOffsets.close();
+		}
+	}
+}
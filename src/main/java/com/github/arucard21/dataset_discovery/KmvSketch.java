@@ -0,0 +1,182 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeSet;
+
+import com.github.arucard21.dataset_discovery.objects.IntersectionEstimate;
+import com.github.arucard21.dataset_domain_terms.BloomFilter;
+
+/**
+ * A K-Minimum-Values sketch of a set of terms, which keeps only the k smallest hashes of those terms.
+ *
+ * Two sketches of the same size can estimate the size of the intersection of their sets in time proportional to k.
+ * The number of terms in the set is counted exactly, so only the Jaccard similarity of the two sets needs to be estimated.
+ * If both sets have at most k terms, the sketches contain all of their hashes and the intersection is exact.
+ */
+public class KmvSketch {
+	private static final int MAGIC = 0x44544b53; // "DTKS"
+
+	private final int k;
+	private final TreeSet<Long> smallestHashes;
+	private long termCount;
+	private volatile long[] sortedHashes;
+
+	private KmvSketch(int k, TreeSet<Long> smallestHashes, long termCount) {
+		this.k = k;
+		this.smallestHashes = smallestHashes;
+		this.termCount = termCount;
+	}
+
+	/**
+	 * Create an empty sketch that keeps the k smallest hashes.
+	 */
+	public static KmvSketch create(int k) {
+		if(k < 1) {
+			throw new IllegalArgumentException("The size of the sketch must be at least 1, but was " + k);
+		}
+		return new KmvSketch(k, new TreeSet<>(), 0);
+	}
+
+	public static KmvSketch read(Path sketchPath) throws IOException {
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sketchPath)))){
+			if(input.readInt() != MAGIC) {
+				throw new IOException(String.format("The file %s is not a valid sketch", sketchPath));
+			}
+			int k = input.readInt();
+			long termCount = input.readLong();
+			int hashCount = input.readInt();
+			TreeSet<Long> smallestHashes = new TreeSet<>();
+			for(int i = 0; i < hashCount; i++) {
+				smallestHashes.add(input.readLong());
+			}
+			return new KmvSketch(k, smallestHashes, termCount);
+		}
+	}
+
+	public void write(Path sketchPath) throws IOException {
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sketchPath)))){
+			output.writeInt(MAGIC);
+			output.writeInt(k);
+			output.writeLong(termCount);
+			output.writeInt(smallestHashes.size());
+			for(long hash : smallestHashes) {
+				output.writeLong(hash);
+			}
+		}
+	}
+
+	/**
+	 * Add a term to this sketch.
+	 *
+	 * Each term must only be added once, since the number of added terms is used as the size of the set.
+	 */
+	public void add(String term) {
+		termCount++;
+		// Only keep the positive 63 bits, so the hashes are ordered the same when they are compared as signed values
+		long hash = BloomFilter.hash(term) >>> 1;
+		if(smallestHashes.size() < k || hash < smallestHashes.last()) {
+			if(smallestHashes.add(hash) && smallestHashes.size() > k) {
+				smallestHashes.pollLast();
+			}
+			sortedHashes = null;
+		}
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public long getTermCount() {
+		return termCount;
+	}
+
+	/**
+	 * Check whether this sketch contains the hashes of all terms in its set, in which case it is not an estimate.
+	 */
+	public boolean isComplete() {
+		return smallestHashes.size() == termCount;
+	}
+
+	/**
+	 * Estimate the number of terms that are in the sets of both this sketch and the given sketch.
+	 *
+	 * The bounds are derived from a Wilson score interval for the Jaccard similarity, which is the fraction of the
+	 * smallest hashes in the union of both sketches that occur in both of them.
+	 *
+	 * @param z the number of standard deviations for the bounds, e.g. 1.96 for a 95% confidence interval.
+	 */
+	public IntersectionEstimate estimateIntersection(KmvSketch other, double z) {
+		long[] hashes = getSortedHashes();
+		long[] otherHashes = other.getSortedHashes();
+		long maxIntersection = Math.min(termCount, other.termCount);
+		if(isComplete() && other.isComplete()) {
+			long intersection = Math.min(countCommon(hashes, otherHashes, Integer.MAX_VALUE)[1], maxIntersection);
+			return new IntersectionEstimate(intersection, intersection, intersection, true);
+		}
+		// Only the smallest hashes of the union for which both sketches are certain whether they contain them
+		int unionSize = Math.min(k, other.k);
+		long[] counts = countCommon(hashes, otherHashes, unionSize);
+		long union = counts[0];
+		if(union == 0) {
+			return new IntersectionEstimate(0, 0, 0, false);
+		}
+		double jaccard = counts[1] / (double) union;
+		double margin = z * Math.sqrt(jaccard * (1d - jaccard) / union + z * z / (4d * union * union));
+		double center = jaccard + z * z / (2d * union);
+		double denominator = 1d + z * z / union;
+		double lowerJaccard = Math.max(0d, (center - margin) / denominator);
+		double upperJaccard = Math.min(1d, (center + margin) / denominator);
+		return new IntersectionEstimate(
+				Math.min(maxIntersection, Math.round(intersectionFromJaccard(jaccard, other))),
+				Math.min(maxIntersection, (long) Math.floor(intersectionFromJaccard(lowerJaccard, other))),
+				Math.min(maxIntersection, (long) Math.ceil(intersectionFromJaccard(upperJaccard, other))),
+				false);
+	}
+
+	/**
+	 * Since intersection = J * union and union = |A| + |B| - intersection, the intersection is J * (|A| + |B|) / (1 + J).
+	 */
+	private double intersectionFromJaccard(double jaccard, KmvSketch other) {
+		return jaccard * (termCount + other.termCount) / (1d + jaccard);
+	}
+
+	/**
+	 * Merge the smallest hashes of both sketches, up to the given number of distinct hashes.
+	 *
+	 * @return the number of distinct hashes that were merged and the number of those that occur in both sketches.
+	 */
+	private static long[] countCommon(long[] hashes, long[] otherHashes, int limit) {
+		int i = 0;
+		int j = 0;
+		long union = 0;
+		long common = 0;
+		while(union < limit && (i < hashes.length || j < otherHashes.length)) {
+			if(j == otherHashes.length || (i < hashes.length && hashes[i] < otherHashes[j])) {
+				i++;
+			}
+			else if(i == hashes.length || otherHashes[j] < hashes[i]) {
+				j++;
+			}
+			else {
+				common++;
+				i++;
+				j++;
+			}
+			union++;
+		}
+		return new long[] {union, common};
+	}
+
+	private long[] getSortedHashes() {
+		if(sortedHashes == null) {
+			sortedHashes = smallestHashes.stream().mapToLong(Long::longValue).toArray();
+		}
+		return sortedHashes;
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import com.github.arucard21.pipeline.IntermediateCodec;
+
+/**
+ * Writes each matched term to a (gzipped) TSV file, along with the column domains of the dataset domain terms that it was matched with.
+ *
+ * The file is kept open and buffered while the term index is read, so writing a matched term only costs a lookup of its column domains.
+ */
+class MatchedTermsWriter implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Writer writer;
+	/**
+	 * The column domains of each dataset domain term, as a comma-separated list of their names.
+	 */
+	private final Map<String, String> columnDomainsByTerm;
+
+	MatchedTermsWriter(Path matchedTermsPath, IntermediateCodec codec, Map<String, String> columnDomainsByTerm) throws IOException {
+		this.columnDomainsByTerm = columnDomainsByTerm;
+		this.writer = new BufferedWriter(new OutputStreamWriter(codec.newOutputStream(matchedTermsPath), StandardCharsets.UTF_8), BUFFER_SIZE);
+		writer.write("term\tcolumn_domains\n");
+	}
+
+	/**
+	 * Write a matched term, which is called while the term index is read and can therefore not throw an IOException.
+	 */
+	void write(String matchedTerm) {
+		try {
+			writer.write(matchedTerm);
+			writer.write('\t');
+			writer.write(columnDomainsByTerm.getOrDefault(matchedTerm, ""));
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,52 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.util.function.Consumer;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.dataset_domain_terms.DomainTermSet;
+
+import org.opendata.db.term.Term;
+import org.opendata.db.term.TermConsumer;
+
+/**
+ * Matches each term of a term index against the dataset domain terms while the term index is being read.
+ *
+ * Only the counts are kept, so the terms of the target dataset never need to be held in memory.
+ * This relies on the term index containing each term only once, which is how D4 generates it.
+ */
+class MatchingTermConsumer implements TermConsumer {
+	private final DomainTermSet datasetDomainTerms;
+	/**
+	 * Receives each matched term, or null if the matched terms are not needed.
+	 */
+	private final Consumer<String> matchedTermConsumer;
+	private long datasetSize = 0;
+	private long matched = 0;
+
+	MatchingTermConsumer(DomainTermSet datasetDomainTerms, Consumer<String> matchedTermConsumer) {
+		this.datasetDomainTerms = datasetDomainTerms;
+		this.matchedTermConsumer = matchedTermConsumer;
+	}
+
+	@Override
+	public void open() {}
+
+	@Override
+	public void consume(Term term) {
+		datasetSize++;
+		String name = term.name();
+		if(datasetDomainTerms.contains(name)) {
+			matched++;
+			if(matchedTermConsumer != null) {
+				matchedTermConsumer.accept(name);
+			}
+		}
+	}
+
+	@Override
+	public void close() {}
+
+	MatchingResult getMatchingResult() {
+		return new MatchingResult(matched, datasetDomainTerms.size(), datasetSize);
+	}
+}
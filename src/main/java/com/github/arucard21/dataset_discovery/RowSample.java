@@ -0,0 +1,179 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.dataset_domain_terms.DomainTermSet;
+
+/**
+ * The terms in a uniform random sample of the rows of each table in an input dataset.
+ *
+ * Each table is a (gzipped) TSV file with a header row, from which a reservoir sample of a fixed number of rows is kept while it is read.
+ * The values in the sampled rows are trimmed and converted to upper case, like the terms in the term index that D4 generates.
+ * This only needs memory for the sampled rows, and avoids writing the column files and term index of the input dataset.
+ */
+public class RowSample {
+	/**
+	 * The number of times that each term occurs in the sampled rows.
+	 */
+	private final Map<String, Integer> termFrequencies;
+	private final long rowCount;
+	private final long sampledRowCount;
+
+	private RowSample(Map<String, Integer> termFrequencies, long rowCount, long sampledRowCount) {
+		this.termFrequencies = termFrequencies;
+		this.rowCount = rowCount;
+		this.sampledRowCount = sampledRowCount;
+	}
+
+	/**
+	 * Sample at most the given number of rows from each table in the given input dataset.
+	 *
+	 * The sample only depends on the names and content of the tables, so sampling the same input dataset again gives the same terms.
+	 */
+	public static RowSample read(Path inputDataset, int rowsPerTable) throws IOException {
+		if(rowsPerTable < 1) {
+			throw new IllegalArgumentException("At least 1 row must be sampled from each table, but was " + rowsPerTable);
+		}
+		List<Path> tables;
+		try(Stream<Path> files = Files.list(inputDataset)){
+			tables = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		Map<String, Integer> termFrequencies = new HashMap<>();
+		long rowCount = 0;
+		long sampledRowCount = 0;
+		for(Path table : tables) {
+			SplittableRandom random = new SplittableRandom(table.getFileName().toString().hashCode());
+			List<String> reservoir = new ArrayList<>(rowsPerTable);
+			long tableRowCount = 0;
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(openTable(table), StandardCharsets.UTF_8), 1 << 16)){
+				// The header row contains the names of the columns, not their values
+				reader.readLine();
+				String row;
+				while((row = reader.readLine()) != null) {
+					tableRowCount++;
+					if(reservoir.size() < rowsPerTable) {
+						reservoir.add(row);
+					}
+					else {
+						long index = random.nextLong(tableRowCount);
+						if(index < rowsPerTable) {
+							reservoir.set((int) index, row);
+						}
+					}
+				}
+			}
+			for(String row : reservoir) {
+				for(String value : row.split("\t", -1)) {
+					String term = value.trim().toUpperCase();
+					if(!term.isEmpty()) {
+						termFrequencies.merge(term, 1, Integer::sum);
+					}
+				}
+			}
+			rowCount += tableRowCount;
+			sampledRowCount += reservoir.size();
+		}
+		return new RowSample(termFrequencies, rowCount, sampledRowCount);
+	}
+
+	private static InputStream openTable(Path table) throws IOException {
+		InputStream input = Files.newInputStream(table);
+		return table.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input;
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public long getSampledRowCount() {
+		return sampledRowCount;
+	}
+
+	/**
+	 * Whether every row of every table was sampled, in which case the terms of the sample are all terms of the input dataset.
+	 */
+	public boolean isComplete() {
+		return sampledRowCount == rowCount;
+	}
+
+	/**
+	 * The number of distinct terms in the sample.
+	 */
+	public long getTermCount() {
+		return termFrequencies.size();
+	}
+
+	/**
+	 * Estimate the number of distinct terms in the input dataset with the Guaranteed-Error Estimator of Charikar et al.
+	 *
+	 * Terms that occur more than once in the sample are counted once, while terms that occur only once are scaled up by
+	 * the square root of the inverse of the sampling fraction, since they likely stand for other terms that were not sampled.
+	 */
+	public double estimateDistinctTermCount() {
+		return isComplete() ? getTermCount() : getTermCount() + (Math.sqrt(getSamplingRatio()) - 1d) * countTermsSampledOnce();
+	}
+
+	/**
+	 * The largest number of distinct terms in the input dataset that is consistent with the sample, which assumes that every
+	 * term that occurs only once in the sample stands for as many distinct terms as the inverse of the sampling fraction.
+	 */
+	public double getDistinctTermCountUpperBound() {
+		return isComplete() ? getTermCount() : getTermCount() + (getSamplingRatio() - 1d) * countTermsSampledOnce();
+	}
+
+	/**
+	 * Estimate the similarity of the input dataset to the given dataset domain terms, with bounds for the given z-score.
+	 *
+	 * The fraction of the distinct terms in the sample that are dataset domain terms estimates that fraction for the input dataset,
+	 * with a Wilson score interval. The overlap coefficient is that fraction times the ratio of the number of distinct terms in the
+	 * input dataset to the smallest of both sets of terms, so its bounds also take the bounds of that number into account.
+	 */
+	public MatchingResult estimateSimilarity(DomainTermSet datasetDomainTerms, double z) {
+		long sampledMatched = termFrequencies.keySet().stream().filter(datasetDomainTerms::contains).count();
+		long sampledTermCount = Math.max(1, getTermCount());
+		double domainSize = Math.max(1, datasetDomainTerms.size());
+		double matchedFraction = sampledMatched / (double) sampledTermCount;
+		double distinctTermCount = estimateDistinctTermCount();
+		long matched = Math.min(datasetDomainTerms.size(), Math.round(matchedFraction * distinctTermCount));
+		MatchingResult matchingResult = new MatchingResult(matched, datasetDomainTerms.size(), Math.round(distinctTermCount));
+		double similarityScore = Math.min(1d, matchedFraction * Math.max(1d, distinctTermCount / domainSize));
+		matchingResult.setSimilarityScore(similarityScore);
+		if(isComplete()) {
+			matchingResult.setSimilarityScoreLowerBound(similarityScore);
+			matchingResult.setSimilarityScoreUpperBound(similarityScore);
+			return matchingResult;
+		}
+		double margin = z * Math.sqrt(matchedFraction * (1d - matchedFraction) / sampledTermCount + z * z / (4d * sampledTermCount * sampledTermCount));
+		double center = matchedFraction + z * z / (2d * sampledTermCount);
+		double denominator = 1d + z * z / sampledTermCount;
+		double lowerFraction = Math.max(0d, (center - margin) / denominator);
+		double upperFraction = Math.min(1d, (center + margin) / denominator);
+		// The input dataset contains at least the distinct terms in the sample
+		matchingResult.setSimilarityScoreLowerBound(Math.min(similarityScore, lowerFraction * Math.max(1d, getTermCount() / domainSize)));
+		matchingResult.setSimilarityScoreUpperBound(Math.max(similarityScore, Math.min(1d, upperFraction * Math.max(1d, getDistinctTermCountUpperBound() / domainSize))));
+		return matchingResult;
+	}
+
+	private double getSamplingRatio() {
+		return rowCount / (double) Math.max(1, sampledRowCount);
+	}
+
+	private long countTermsSampledOnce() {
+		return termFrequencies.values().stream().filter(frequency -> frequency == 1).count();
+	}
+}
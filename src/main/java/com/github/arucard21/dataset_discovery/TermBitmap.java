@@ -0,0 +1,342 @@
+package com.github.arucard21.dataset_discovery;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed bitmap of term identifiers, which are the ordinals of those terms in a shared term dictionary.
+ *
+ * Like a Roaring bitmap, the identifiers are split into containers by their upper 16 bits. A container with at most
+ * 4096 identifiers stores the lower 16 bits of each of them in a sorted array, a fuller container stores a bitmap of 65536 bits.
+ * The number of identifiers in both of two bitmaps is then counted per container, without creating their intersection.
+ */
+public class TermBitmap {
+	private static final int MAGIC = 0x44544231; // "DTB1"
+	private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+	private static final int BITMAP_CONTAINER_LONGS = (1 << 16) / Long.SIZE;
+
+	private final char[] keys;
+	/**
+	 * The sorted lower 16 bits of each identifier in a container, or null if that container is a bitmap.
+	 */
+	private final char[][] arrayContainers;
+	/**
+	 * The bitmap of the identifiers in a container, or null if that container is an array.
+	 */
+	private final long[][] bitmapContainers;
+	private final long cardinality;
+
+	private TermBitmap(char[] keys, char[][] arrayContainers, long[][] bitmapContainers, long cardinality) {
+		this.keys = keys;
+		this.arrayContainers = arrayContainers;
+		this.bitmapContainers = bitmapContainers;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Create a bitmap from the given identifiers, which may be unsorted and contain duplicates.
+	 */
+	public static TermBitmap of(int[] identifiers, int count) {
+		int[] sorted = Arrays.copyOf(identifiers, count);
+		Arrays.sort(sorted);
+		Builder builder = new Builder();
+		for(int i = 0; i < sorted.length; i++) {
+			if(i == 0 || sorted[i] != sorted[i - 1]) {
+				builder.add(sorted[i]);
+			}
+		}
+		return builder.build();
+	}
+
+	public static TermBitmap read(DataInput input) throws IOException {
+		if(input.readInt() != MAGIC) {
+			throw new IOException("The input is not a valid term bitmap");
+		}
+		int containerCount = input.readInt();
+		long cardinality = input.readLong();
+		char[] keys = new char[containerCount];
+		char[][] arrayContainers = new char[containerCount][];
+		long[][] bitmapContainers = new long[containerCount][];
+		for(int i = 0; i < containerCount; i++) {
+			keys[i] = input.readChar();
+			int containerCardinality = input.readInt();
+			if(containerCardinality <= ARRAY_CONTAINER_MAX_SIZE) {
+				arrayContainers[i] = new char[containerCardinality];
+				for(int j = 0; j < containerCardinality; j++) {
+					arrayContainers[i][j] = input.readChar();
+				}
+			}
+			else {
+				bitmapContainers[i] = new long[BITMAP_CONTAINER_LONGS];
+				for(int j = 0; j < BITMAP_CONTAINER_LONGS; j++) {
+					bitmapContainers[i][j] = input.readLong();
+				}
+			}
+		}
+		return new TermBitmap(keys, arrayContainers, bitmapContainers, cardinality);
+	}
+
+	/**
+	 * Read a bitmap from the given buffer, starting at its current position, which is moved past the bitmap.
+	 */
+	public static TermBitmap read(ByteBuffer buffer) throws IOException {
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException("The input is not a valid term bitmap");
+		}
+		int containerCount = buffer.getInt();
+		long cardinality = buffer.getLong();
+		char[] keys = new char[containerCount];
+		char[][] arrayContainers = new char[containerCount][];
+		long[][] bitmapContainers = new long[containerCount][];
+		for(int i = 0; i < containerCount; i++) {
+			keys[i] = buffer.getChar();
+			int containerCardinality = buffer.getInt();
+			if(containerCardinality <= ARRAY_CONTAINER_MAX_SIZE) {
+				arrayContainers[i] = new char[containerCardinality];
+				buffer.asCharBuffer().get(arrayContainers[i]);
+				buffer.position(buffer.position() + containerCardinality * Character.BYTES);
+			}
+			else {
+				bitmapContainers[i] = new long[BITMAP_CONTAINER_LONGS];
+				buffer.asLongBuffer().get(bitmapContainers[i]);
+				buffer.position(buffer.position() + BITMAP_CONTAINER_LONGS * Long.BYTES);
+			}
+		}
+		return new TermBitmap(keys, arrayContainers, bitmapContainers, cardinality);
+	}
+
+	public void write(DataOutput output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(keys.length);
+		output.writeLong(cardinality);
+		for(int i = 0; i < keys.length; i++) {
+			output.writeChar(keys[i]);
+			output.writeInt(containerCardinality(i));
+			if(arrayContainers[i] != null) {
+				for(char value : arrayContainers[i]) {
+					output.writeChar(value);
+				}
+			}
+			else {
+				for(long bits : bitmapContainers[i]) {
+					output.writeLong(bits);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The number of identifiers in this bitmap.
+	 */
+	public long getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Provide each identifier in this bitmap to the given consumer, in increasing order.
+	 */
+	public void forEach(IntConsumer consumer) {
+		for(int i = 0; i < keys.length; i++) {
+			int high = keys[i] << 16;
+			if(arrayContainers[i] != null) {
+				for(char value : arrayContainers[i]) {
+					consumer.accept(high | value);
+				}
+			}
+			else {
+				long[] bitmap = bitmapContainers[i];
+				for(int j = 0; j < BITMAP_CONTAINER_LONGS; j++) {
+					long bits = bitmap[j];
+					while(bits != 0) {
+						consumer.accept(high | (j << 6) | Long.numberOfTrailingZeros(bits));
+						bits &= bits - 1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count the identifiers that are in both this bitmap and the given bitmap.
+	 */
+	public long andCardinality(TermBitmap other) {
+		long common = 0;
+		int i = 0;
+		int j = 0;
+		while(i < keys.length && j < other.keys.length) {
+			if(keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if(keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				common += andCardinality(i, other, j);
+				i++;
+				j++;
+			}
+		}
+		return common;
+	}
+
+	private long andCardinality(int container, TermBitmap other, int otherContainer) {
+		char[] array = arrayContainers[container];
+		char[] otherArray = other.arrayContainers[otherContainer];
+		if(array != null && otherArray != null) {
+			return array.length <= otherArray.length ? andCardinality(array, otherArray) : andCardinality(otherArray, array);
+		}
+		if(array != null) {
+			return andCardinality(array, other.bitmapContainers[otherContainer]);
+		}
+		if(otherArray != null) {
+			return andCardinality(otherArray, bitmapContainers[container]);
+		}
+		long[] bitmap = bitmapContainers[container];
+		long[] otherBitmap = other.bitmapContainers[otherContainer];
+		long common = 0;
+		for(int i = 0; i < BITMAP_CONTAINER_LONGS; i++) {
+			common += Long.bitCount(bitmap[i] & otherBitmap[i]);
+		}
+		return common;
+	}
+
+	/**
+	 * Count the values in both sorted arrays, where the first array is not larger than the second one.
+	 */
+	private static long andCardinality(char[] smaller, char[] larger) {
+		long common = 0;
+		// Searching is faster than merging when one array is much smaller than the other
+		if(smaller.length * 32 < larger.length) {
+			int from = 0;
+			for(char value : smaller) {
+				int index = Arrays.binarySearch(larger, from, larger.length, value);
+				if(index >= 0) {
+					common++;
+					from = index + 1;
+				}
+				else {
+					from = -index - 1;
+				}
+			}
+			return common;
+		}
+		int i = 0;
+		int j = 0;
+		while(i < smaller.length && j < larger.length) {
+			if(smaller[i] < larger[j]) {
+				i++;
+			}
+			else if(smaller[i] > larger[j]) {
+				j++;
+			}
+			else {
+				common++;
+				i++;
+				j++;
+			}
+		}
+		return common;
+	}
+
+	private static long andCardinality(char[] array, long[] bitmap) {
+		long common = 0;
+		for(char value : array) {
+			common += (bitmap[value >>> 6] >>> value) & 1L;
+		}
+		return common;
+	}
+
+	private int containerCardinality(int container) {
+		if(arrayContainers[container] != null) {
+			return arrayContainers[container].length;
+		}
+		int containerCardinality = 0;
+		for(long bits : bitmapContainers[container]) {
+			containerCardinality += Long.bitCount(bits);
+		}
+		return containerCardinality;
+	}
+
+	/**
+	 * Builds a bitmap from identifiers that are added in increasing order.
+	 *
+	 * The current container is turned into a bitmap as soon as it is too large for an array, so a builder never needs more than a few kilobytes.
+	 */
+	public static class Builder {
+		private char[] keys = new char[4];
+		private char[][] arrayContainers = new char[4][];
+		private long[][] bitmapContainers = new long[4][];
+		private int containerCount = 0;
+		private long cardinality = 0;
+		private int currentKey = -1;
+		private char[] currentValues = new char[16];
+		private int currentSize = 0;
+		private long[] currentBitmap;
+		private long previous = -1;
+
+		public Builder add(int identifier) {
+			if(identifier < 0 || identifier <= previous) {
+				throw new IllegalArgumentException(String.format("The identifiers must be added in increasing order, but %d was added after %d", identifier, previous));
+			}
+			previous = identifier;
+			int key = identifier >>> 16;
+			if(key != currentKey) {
+				finishContainer();
+				currentKey = key;
+			}
+			char value = (char) identifier;
+			if(currentBitmap == null && currentSize == ARRAY_CONTAINER_MAX_SIZE) {
+				currentBitmap = new long[BITMAP_CONTAINER_LONGS];
+				for(int i = 0; i < currentSize; i++) {
+					currentBitmap[currentValues[i] >>> 6] |= 1L << currentValues[i];
+				}
+			}
+			if(currentBitmap != null) {
+				currentBitmap[value >>> 6] |= 1L << value;
+			}
+			else {
+				if(currentSize == currentValues.length) {
+					currentValues = Arrays.copyOf(currentValues, currentValues.length * 2);
+				}
+				currentValues[currentSize] = value;
+			}
+			currentSize++;
+			cardinality++;
+			return this;
+		}
+
+		public TermBitmap build() {
+			finishContainer();
+			return new TermBitmap(
+					Arrays.copyOf(keys, containerCount),
+					Arrays.copyOf(arrayContainers, containerCount),
+					Arrays.copyOf(bitmapContainers, containerCount),
+					cardinality);
+		}
+
+		private void finishContainer() {
+			if(currentSize == 0) {
+				return;
+			}
+			if(containerCount == keys.length) {
+				keys = Arrays.copyOf(keys, keys.length * 2);
+				arrayContainers = Arrays.copyOf(arrayContainers, arrayContainers.length * 2);
+				bitmapContainers = Arrays.copyOf(bitmapContainers, bitmapContainers.length * 2);
+			}
+			keys[containerCount] = (char) currentKey;
+			if(currentBitmap == null) {
+				arrayContainers[containerCount] = Arrays.copyOf(currentValues, currentSize);
+			}
+			else {
+				bitmapContainers[containerCount] = currentBitmap;
+				currentBitmap = null;
+			}
+			containerCount++;
+			currentSize = 0;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.github.arucard21.dataset_discovery.objects;
+
+public class IntersectionEstimate {
+	private final long estimate;
+	private final long lowerBound;
+	private final long upperBound;
+	private final boolean exact;
+
+	public IntersectionEstimate(long estimate, long lowerBound, long upperBound, boolean exact) {
+		this.estimate = estimate;
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.exact = exact;
+	}
+
+	public long getEstimate() {
+		return estimate;
+	}
+	public long getLowerBound() {
+		return lowerBound;
+	}
+	public long getUpperBound() {
+		return upperBound;
+	}
+	public boolean isExact() {
+		return exact;
+	}
+}
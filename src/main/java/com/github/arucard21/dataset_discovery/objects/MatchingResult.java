@@ -5,6 +5,15 @@ public class MatchingResult {
 	private long domainRepresentationSize;
 	private long datasetSize;
 	private double similarityScore;
+	/**
+	 * The bounds of the similarity score, which are only set when the matching result is estimated from sketches.
+	 */
+	private Double similarityScoreLowerBound;
+	private Double similarityScoreUpperBound;
+	/**
+	 * Whether this matching result was calculated in this run, instead of being read from an earlier run. This is not stored.
+	 */
+	private transient boolean recalculated;
 
 	public MatchingResult(long matched, long domainRepresentationSize, long datasetSize) {
 		this.matched = matched;
@@ -36,4 +45,25 @@ public class MatchingResult {
 	public void setSimilarityScore(double similarityScore) {
 		this.similarityScore = similarityScore;
 	}
+	public Double getSimilarityScoreLowerBound() {
+		return similarityScoreLowerBound;
+	}
+	public void setSimilarityScoreLowerBound(Double similarityScoreLowerBound) {
+		this.similarityScoreLowerBound = similarityScoreLowerBound;
+	}
+	public Double getSimilarityScoreUpperBound() {
+		return similarityScoreUpperBound;
+	}
+	public void setSimilarityScoreUpperBound(Double similarityScoreUpperBound) {
+		this.similarityScoreUpperBound = similarityScoreUpperBound;
+	}
+	public boolean isRecalculated() {
+		return recalculated;
+	}
+	public void setRecalculated(boolean recalculated) {
+		this.recalculated = recalculated;
+	}
+	public boolean isEstimated() {
+		return similarityScoreLowerBound != null;
+	}
 }
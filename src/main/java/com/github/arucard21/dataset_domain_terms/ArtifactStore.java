@@ -0,0 +1,155 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.arucard21.pipeline.StageAction;
+import com.github.arucard21.pipeline.StageOutputs;
+
+/**
+ * A directory of stage outputs that is shared between different runs of DatasetDomainTerms.
+ *
+ * Each stage output is stored under a key that is a hash of the stage name, its parameters and the keys of its inputs.
+ * A run that needs a stage output with a key that is already in the store links to it instead of computing it again.
+ */
+public class ArtifactStore {
+	private static final String STAGING_PREFIX = ".staging-";
+
+	private final Path storeDirectory;
+
+	public ArtifactStore(Path storeDirectory) {
+		this.storeDirectory = storeDirectory;
+	}
+
+	public Path getStoreDirectory() {
+		return storeDirectory;
+	}
+
+	/**
+	 * Calculate the key for the output of a stage.
+	 *
+	 * @param stageName the name of the stage.
+	 * @param parameters all parameters that influence the output of the stage.
+	 * @param inputKeys the keys of all inputs of the stage, in a fixed order.
+	 */
+	public static String key(String stageName, String parameters, List<String> inputKeys) {
+		return sha256(stageName + "\n" + parameters + "\n" + String.join("\n", inputKeys));
+	}
+
+	/**
+	 * Calculate the key for an input directory from the name, size and modification time of each file in it.
+	 */
+	public static String inputDirectoryKey(Path inputDirectory) throws IOException {
+		try(Stream<Path> files = Files.walk(inputDirectory)){
+			String fingerprint = files
+					.filter(Files::isRegularFile)
+					.sorted()
+					.map(file -> {
+						File inputFile = file.toFile();
+						return String.format("%s,%d,%d", inputDirectory.relativize(file), inputFile.length(), inputFile.lastModified());
+					})
+					.collect(Collectors.joining("\n"));
+			return sha256(fingerprint);
+		}
+	}
+
+	/**
+	 * Make sure that the outputs of a stage exist in the given output directory.
+	 *
+	 * If the store does not contain the outputs for this key yet, the stage is run in a staging directory inside the store.
+	 * The staging directory is only moved into place once the stage has completed, so an interrupted stage is never reused.
+	 * The outputs are then linked into the output directory, or copied if links are not supported.
+	 *
+	 * @param outputNames the names of the files or directories that the stage writes.
+	 */
+	public void materialize(String stageName, String key, Path outputDirectory, List<String> outputNames, StageAction action) throws IOException, InterruptedException {
+		Path stageDirectory = storeDirectory.resolve(stageName);
+		Path artifactDirectory = stageDirectory.resolve(key);
+		if(artifactDirectory.toFile().exists()) {
+			System.out.println(String.format("Reusing %s from %s", String.join(", ", outputNames), artifactDirectory));
+		}
+		else {
+			Path stagingDirectory = stageDirectory.resolve(STAGING_PREFIX + key + "-" + UUID.randomUUID());
+			Files.createDirectories(stagingDirectory);
+			try {
+				action.run(stagingDirectory);
+				StageOutputs.sync(stagingDirectory);
+				Files.move(stagingDirectory, artifactDirectory, StandardCopyOption.ATOMIC_MOVE);
+			} catch (FileSystemException e) {
+				// Moving onto a directory that another run stored in the meantime fails with FileAlreadyExistsException or,
+				// on Linux, with a FileSystemException because that directory is not empty. The artifact of that run is then reused.
+				if(!Files.isDirectory(artifactDirectory)) {
+					throw e;
+				}
+				System.out.println(String.format("Reusing %s from %s, which another run stored in the meantime", String.join(", ", outputNames), artifactDirectory));
+			} finally {
+				// Only left after a failure or when another run stored the same artifact, since it is moved into place otherwise
+				if(Files.exists(stagingDirectory)) {
+					deleteRecursively(stagingDirectory);
+				}
+			}
+		}
+		for(String outputName : outputNames) {
+			link(artifactDirectory.resolve(outputName), outputDirectory.resolve(outputName));
+		}
+	}
+
+	/**
+	 * Link the output to the artifact, or copy the artifact if the file system does not support links.
+	 *
+	 * Other failures, like a missing artifact or an output that already exists, are not hidden by copying.
+	 */
+	private static void link(Path artifact, Path output) throws IOException {
+		try {
+			Files.createSymbolicLink(output, artifact.toAbsolutePath());
+		} catch (UnsupportedOperationException e) {
+			copyRecursively(artifact, output);
+		} catch (FileSystemException e) {
+			// Subclasses like NoSuchFileException and AccessDeniedException are real errors, while a missing privilege or an
+			// unsupported operation on this file system (including a link across devices) is only reported as a FileSystemException
+			if(e.getClass() != FileSystemException.class) {
+				throw e;
+			}
+			System.out.println(String.format("Copying %s, since it can not be linked: %s", artifact, e.getMessage()));
+			copyRecursively(artifact, output);
+		}
+	}
+
+	private static void copyRecursively(Path source, Path target) throws IOException {
+		try(Stream<Path> paths = Files.walk(source)){
+			for(Path path : (Iterable<Path>) paths::iterator) {
+				Files.copy(path, target.resolve(source.relativize(path).toString()), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		try(Stream<Path> paths = Files.walk(path)){
+			for(Path toDelete : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(toDelete);
+			}
+		}
+	}
+
+	private static String sha256(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
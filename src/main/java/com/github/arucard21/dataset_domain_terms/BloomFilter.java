@@ -0,0 +1,137 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A Bloom filter over terms, which can tell with certainty that a term is not in a set of terms.
+ *
+ * The terms are hashed directly from their characters, so a lookup does not allocate.
+ * The bit positions are derived from a single 64-bit hash using double hashing.
+ */
+public class BloomFilter {
+	private static final int MAGIC = 0x44544246; // "DTBF"
+
+	private final long[] bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final double falsePositiveRate;
+	private final long expectedTermCount;
+
+	private BloomFilter(long[] bits, long bitCount, int hashCount, double falsePositiveRate, long expectedTermCount) {
+		this.bits = bits;
+		this.bitCount = bitCount;
+		this.hashCount = hashCount;
+		this.falsePositiveRate = falsePositiveRate;
+		this.expectedTermCount = expectedTermCount;
+	}
+
+	/**
+	 * Create an empty Bloom filter that is sized for the given number of terms and the given false-positive rate.
+	 */
+	public static BloomFilter create(long expectedTermCount, double falsePositiveRate) {
+		if(falsePositiveRate <= 0d || falsePositiveRate >= 1d) {
+			throw new IllegalArgumentException("The false-positive rate must be between 0 and 1, but was " + falsePositiveRate);
+		}
+		long termCount = Math.max(1, expectedTermCount);
+		long bitCount = Math.max(64, (long) Math.ceil(-termCount * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+		int hashCount = Math.max(1, (int) Math.round((double) bitCount / termCount * Math.log(2)));
+		long[] bits = new long[Math.toIntExact((bitCount + 63) / 64)];
+		return new BloomFilter(bits, bits.length * 64L, hashCount, falsePositiveRate, expectedTermCount);
+	}
+
+	public static BloomFilter read(Path bloomFilterPath) throws IOException {
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(bloomFilterPath)))){
+			if(input.readInt() != MAGIC) {
+				throw new IOException(String.format("The file %s is not a valid Bloom filter", bloomFilterPath));
+			}
+			int hashCount = input.readInt();
+			double falsePositiveRate = input.readDouble();
+			long expectedTermCount = input.readLong();
+			long[] bits = new long[input.readInt()];
+			for(int i = 0; i < bits.length; i++) {
+				bits[i] = input.readLong();
+			}
+			return new BloomFilter(bits, bits.length * 64L, hashCount, falsePositiveRate, expectedTermCount);
+		}
+	}
+
+	public void write(Path bloomFilterPath) throws IOException {
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bloomFilterPath)))){
+			output.writeInt(MAGIC);
+			output.writeInt(hashCount);
+			output.writeDouble(falsePositiveRate);
+			output.writeLong(expectedTermCount);
+			output.writeInt(bits.length);
+			for(long word : bits) {
+				output.writeLong(word);
+			}
+		}
+	}
+
+	public void add(String term) {
+		long hash = hash(term);
+		int firstHash = (int) hash;
+		int secondHash = (int) (hash >>> 32);
+		for(int i = 0; i < hashCount; i++) {
+			long bit = Math.floorMod(firstHash + (long) i * secondHash, bitCount);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Check whether the given term may have been added to this filter.
+	 *
+	 * @return false if the term was definitely not added, true if it may have been added.
+	 */
+	public boolean mightContain(String term) {
+		long hash = hash(term);
+		int firstHash = (int) hash;
+		int secondHash = (int) (hash >>> 32);
+		for(int i = 0; i < hashCount; i++) {
+			long bit = Math.floorMod(firstHash + (long) i * secondHash, bitCount);
+			if((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	public long getExpectedTermCount() {
+		return expectedTermCount;
+	}
+
+	public long getBitCount() {
+		return bitCount;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * FNV-1a over the characters of the term, followed by the MurmurHash3 finalizer to spread the bits.
+	 */
+	public static long hash(String term) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < term.length(); i++) {
+			hash ^= term.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.github.arucard21.dataset_domain_terms.objects.BloomFilterStatistics;
+
+/**
+ * Dataset domain terms that are checked against a Bloom filter before the exact lookup.
+ *
+ * Most terms of a target dataset are not dataset domain terms, so most lookups are rejected by the Bloom filter
+ * without touching the exact set of terms.
+ */
+public class BloomFilteredDomainTermSet implements DomainTermSet {
+	private final BloomFilter bloomFilter;
+	private final DomainTermSet datasetDomainTerms;
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder matched = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+
+	public BloomFilteredDomainTermSet(BloomFilter bloomFilter, DomainTermSet datasetDomainTerms) {
+		this.bloomFilter = bloomFilter;
+		this.datasetDomainTerms = datasetDomainTerms;
+	}
+
+	@Override
+	public boolean contains(String term) {
+		if(!bloomFilter.mightContain(term)) {
+			rejected.increment();
+			return false;
+		}
+		if(datasetDomainTerms.contains(term)) {
+			matched.increment();
+			return true;
+		}
+		falsePositives.increment();
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return datasetDomainTerms.size();
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		datasetDomainTerms.forEach(action);
+	}
+
+	public BloomFilterStatistics getStatistics() {
+		return new BloomFilterStatistics(
+				bloomFilter.getBitCount(),
+				bloomFilter.getHashCount(),
+				bloomFilter.getFalsePositiveRate(),
+				rejected.sum(),
+				matched.sum(),
+				falsePositives.sum());
+	}
+}
@@ -0,0 +1,151 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.arucard21.dataset_domain_terms.objects.ColumnDomain;
+import com.github.arucard21.dataset_domain_terms.objects.NamedColumnDomain;
+import com.google.gson.Gson;
+
+/**
+ * Reads the column domains of a dataset domain, which is either a directory with a JSON file for each column domain or a consolidated file.
+ *
+ * A consolidated dataset domain is a gzipped JSON lines file, where each line contains a column domain along with its name.
+ * Each line is compressed as a separate gzip member, so the whole file can still be read as a single gzip stream. The offset of each
+ * member is stored in an index next to that file, so a single column domain can also be read without decompressing the others.
+ */
+public class ColumnDomains {
+	public static final String OFFSETS_SUFFIX = ".offsets";
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Gson GSON = new Gson();
+
+	private ColumnDomains() {}
+
+	/**
+	 * Whether the given dataset domain is a consolidated file instead of a directory.
+	 */
+	public static boolean isConsolidated(Path datasetDomainPath) {
+		return Files.isRegularFile(datasetDomainPath);
+	}
+
+	/**
+	 * Perform the given action for each column domain in the given dataset domain, in the order of their names.
+	 *
+	 * The name of a column domain in a directory is the name of its file, without the extension.
+	 */
+	public static void forEach(Path datasetDomainPath, ColumnDomainConsumer action) throws IOException {
+		if(isConsolidated(datasetDomainPath)) {
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(datasetDomainPath), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)){
+				String line;
+				while((line = reader.readLine()) != null) {
+					NamedColumnDomain columnDomain = GSON.fromJson(line, NamedColumnDomain.class);
+					action.accept(columnDomain.getName(), columnDomain);
+				}
+			}
+			return;
+		}
+		List<Path> columnDomainPaths;
+		try(Stream<Path> paths = Files.list(datasetDomainPath)){
+			columnDomainPaths = paths.sorted().collect(Collectors.toList());
+		}
+		for(Path columnDomainPath : columnDomainPaths) {
+			try(Reader reader = Files.newBufferedReader(columnDomainPath)){
+				action.accept(getName(columnDomainPath), GSON.fromJson(reader, ColumnDomain.class));
+			}
+		}
+	}
+
+	/**
+	 * Read a single column domain from a consolidated dataset domain, or null if it does not contain a column domain with that name.
+	 */
+	public static ColumnDomain read(Path consolidatedPath, String name) throws IOException {
+		Long offset = null;
+		for(String line : Files.readAllLines(getOffsetsPath(consolidatedPath))) {
+			String[] values = line.split("\t");
+			if(values[0].equals(name)) {
+				offset = Long.valueOf(values[1]);
+				break;
+			}
+		}
+		if(offset == null) {
+			return null;
+		}
+		try(FileChannel channel = FileChannel.open(consolidatedPath, StandardOpenOption.READ)){
+			channel.position(offset);
+			// The gzip member of this column domain only contains its own line, so only that line is read
+			InputStream member = new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(member, StandardCharsets.UTF_8));
+			return GSON.fromJson(reader.readLine(), NamedColumnDomain.class);
+		}
+	}
+
+	/**
+	 * Compress a column domain into its own gzip member, to be written to a consolidated dataset domain.
+	 *
+	 * This is separate from writing the members, so the column domains can be compressed in parallel.
+	 */
+	static byte[] compress(String name, ColumnDomain columnDomain) throws IOException {
+		NamedColumnDomain namedColumnDomain = new NamedColumnDomain();
+		namedColumnDomain.setName(name);
+		namedColumnDomain.setColumns(columnDomain.getColumns());
+		namedColumnDomain.setTerms(columnDomain.getTerms());
+		ByteArrayOutputStream member = new ByteArrayOutputStream();
+		try(OutputStream output = new GZIPOutputStream(member)){
+			output.write(GSON.toJson(namedColumnDomain).getBytes(StandardCharsets.UTF_8));
+			output.write('\n');
+		}
+		return member.toByteArray();
+	}
+
+	/**
+	 * Write the compressed column domains, in the given order, to a consolidated dataset domain and its offsets index.
+	 */
+	static void writeConsolidated(List<String> names, List<byte[]> members, Path consolidatedPath) throws IOException {
+		long offset = 0;
+		try(OutputStream output = Files.newOutputStream(consolidatedPath);
+				Writer offsets = Files.newBufferedWriter(getOffsetsPath(consolidatedPath))){
+			for(int i = 0; i < members.size(); i++) {
+				offsets.write(String.format("%s\t%d\n", names.get(i), offset));
+				output.write(members.get(i));
+				offset += members.get(i).length;
+			}
+		}
+	}
+
+	public static Path getOffsetsPath(Path consolidatedPath) {
+		return consolidatedPath.resolveSibling(consolidatedPath.getFileName() + OFFSETS_SUFFIX);
+	}
+
+	/**
+	 * The name of a column domain, which is the name of its file without the extension.
+	 */
+	public static String getName(Path columnDomainPath) {
+		String fileName = columnDomainPath.getFileName().toString();
+		return fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+	}
+
+	/**
+	 * Receives a column domain along with its name.
+	 */
+	@FunctionalInterface
+	public interface ColumnDomainConsumer {
+		void accept(String name, ColumnDomain columnDomain) throws IOException;
+	}
+}
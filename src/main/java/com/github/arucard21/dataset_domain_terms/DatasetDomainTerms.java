@@ -3,13 +3,27 @@ package com.github.arucard21.dataset_domain_terms;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.arucard21.dataset_domain_terms.objects.ColumnDomain;
-import com.github.arucard21.dataset_domain_terms.objects.ExportedStrongDomain;
+import com.github.arucard21.pipeline.IntermediateCodec;
+import com.github.arucard21.pipeline.IoExecutors;
+import com.github.arucard21.pipeline.StageAction;
+import com.github.arucard21.pipeline.StageMeasurement;
+import com.github.arucard21.pipeline.StageOutputs;
+import com.github.arucard21.pipeline.TelemetrySink;
 import com.google.gson.GsonBuilder;
 
 import org.opendata.core.constraint.Threshold;
@@ -18,6 +32,7 @@ import org.opendata.curation.d4.D4Config;
 import org.opendata.curation.d4.telemetry.TelemetryPrinter;
 
 public class DatasetDomainTerms {
+	public static final String PIPELINE_NAME = "dataset-domain-terms";
 	public static final String COLUMNS_DIR_NAME = "columns";
 	public static final String COLUMNS_METADATA_FILE_NAME = "columns.tsv";
 	public static final String TERM_INDEX_FILE_NAME = "term-index.txt.gz";
@@ -28,6 +43,8 @@ public class DatasetDomainTerms {
 	public static final String COLUMN_DOMAINS_INTERNAL_FILE_NAME = "strong-domains.txt.gz";
 	public static final String COLUMN_DOMAINS_DIR_NAME = "domains";
 	public static final String DATASET_DOMAIN_DIR_NAME = "dataset-domain";
+	public static final String DATASET_DOMAIN_FILE_NAME = "dataset-domain.jsonl.gz";
+	public static final String DATASET_DOMAIN_DICTIONARY_FILE_NAME = "dataset-domain-terms.dict";
 
 	/**
 	 * Path to the directory containing all tables from both domain-representative datasets, as (gzipped) TSV files.
@@ -41,6 +58,30 @@ public class DatasetDomainTerms {
 	private String pruningStrategy;
 	private boolean columnExpansionDisabled;
 	private boolean allTermsFromColumnDomainsIncluded;
+	/**
+	 * Determines whether the dataset domain is written to a single consolidated file, instead of a directory with a JSON file for each column domain.
+	 */
+	private boolean datasetDomainConsolidated;
+	/**
+	 * The store that stage outputs are shared through, or null if each run computes all of its own stage outputs.
+	 */
+	private ArtifactStore artifactStore;
+	/**
+	 * The key of each stage output that was used in this run, which identifies it in the artifact store.
+	 */
+	private final Map<Path, String> artifactKeys = new HashMap<>();
+	/**
+	 * The sink that receives the telemetry of each stage, or null if no telemetry is recorded.
+	 */
+	private TelemetrySink telemetrySink;
+	/**
+	 * The compression of the intermediate files that D4 writes for later stages.
+	 */
+	private IntermediateCodec intermediateCodec = IntermediateCodec.GZIP_FAST;
+	/**
+	 * Determines whether the column domains are read and written on virtual threads, instead of on the common pool of parallel streams.
+	 */
+	private boolean virtualThreadsUsed;
 
 	public DatasetDomainTerms(Path domainRepresentativeDatasetsDirectory, Path outputDirectory) {
 		this.domainRepresentativeDatasetsDirectory = domainRepresentativeDatasetsDirectory;
@@ -83,6 +124,75 @@ public class DatasetDomainTerms {
 		return this;
 	}
 
+	public boolean isDatasetDomainConsolidated() {
+		return datasetDomainConsolidated;
+	}
+
+	/**
+	 * Set whether the dataset domain is written to a single gzipped JSON lines file with an index of the offset of each column domain, see ColumnDomains.
+	 *
+	 * This avoids creating and later opening a file for each column domain. The path returned by generate() is then the path to that file.
+	 */
+	public DatasetDomainTerms datasetDomainConsolidated(boolean datasetDomainConsolidated) {
+		this.datasetDomainConsolidated = datasetDomainConsolidated;
+		return this;
+	}
+
+	public Path getArtifactStore() {
+		return artifactStore == null ? null : artifactStore.getStoreDirectory();
+	}
+
+	/**
+	 * Share the stage outputs through the artifact store in the given directory.
+	 *
+	 * Runs with the same input and the same parameters for a stage then reuse its outputs instead of computing them again.
+	 * The outputs are linked into the output directory, so it looks the same as without an artifact store.
+	 */
+	public DatasetDomainTerms artifactStore(Path artifactStoreDirectory) {
+		this.artifactStore = artifactStoreDirectory == null ? null : new ArtifactStore(artifactStoreDirectory);
+		return this;
+	}
+
+	public TelemetrySink getTelemetrySink() {
+		return telemetrySink;
+	}
+
+	/**
+	 * Record the wall time, CPU time, GC time, peak heap usage, and bytes read and written of each stage in the given sink.
+	 */
+	public DatasetDomainTerms telemetrySink(TelemetrySink telemetrySink) {
+		this.telemetrySink = telemetrySink;
+		return this;
+	}
+
+	public IntermediateCodec getIntermediateCodec() {
+		return intermediateCodec;
+	}
+
+	/**
+	 * Set the compression of the intermediate files, like the term index and the signatures.
+	 *
+	 * Intermediate files that were already generated with another codec are still reused.
+	 */
+	public DatasetDomainTerms intermediateCodec(IntermediateCodec intermediateCodec) {
+		this.intermediateCodec = intermediateCodec;
+		return this;
+	}
+
+	public boolean isVirtualThreadsUsed() {
+		return virtualThreadsUsed;
+	}
+
+	/**
+	 * Set whether each column domain is read and written on its own virtual thread, which requires Java 21 or later.
+	 *
+	 * The D4 stages still run one at a time with their own threads. On earlier versions of Java, this falls back to a pool of platform threads.
+	 */
+	public DatasetDomainTerms virtualThreadsUsed(boolean virtualThreadsUsed) {
+		this.virtualThreadsUsed = virtualThreadsUsed;
+		return this;
+	}
+
 	public Path getDomainRepresentativeDatasetsDirectory() {
 		return domainRepresentativeDatasetsDirectory;
 	}
@@ -93,7 +203,9 @@ public class DatasetDomainTerms {
 
 	public Path generate() throws IOException {
 		Path columnDomainsPath = generateColumnDomains();
-		return generateDatasetDomain(columnDomainsPath);
+		Path datasetDomainPath = generateDatasetDomain(columnDomainsPath);
+		generateDatasetDomainDictionary(datasetDomainPath);
+		return datasetDomainPath;
 	}
 
 	private Path generateColumnDomains() throws IOException {
@@ -119,30 +231,112 @@ public class DatasetDomainTerms {
 		if(!inputExists(columnDomainsPath)) {
 			throw new IllegalArgumentException(String.format("The path \"%s\" to the column domains used as input does not exist"));
 		}
-		Path datasetDomainPath = columnDomainsPath.getParent().resolve(DATASET_DOMAIN_DIR_NAME);
-		if(!outputExists(datasetDomainPath)) {
-			ensureOutputDirExists(datasetDomainPath);
-			Files.list(columnDomainsPath).forEach(columnDomainPath -> writeColumnDomainTermsUsedInDatasetDomain(columnDomainPath, datasetDomainPath));
+		String datasetDomainName = datasetDomainConsolidated ? DATASET_DOMAIN_FILE_NAME : DATASET_DOMAIN_DIR_NAME;
+		Path datasetDomainPath = columnDomainsPath.getParent().resolve(datasetDomainName);
+		List<String> outputNames = datasetDomainConsolidated ? List.of(DATASET_DOMAIN_FILE_NAME, DATASET_DOMAIN_FILE_NAME + ColumnDomains.OFFSETS_SUFFIX) : List.of(DATASET_DOMAIN_DIR_NAME);
+		try(StageMeasurement measurement = startMeasurement(DATASET_DOMAIN_DIR_NAME, datasetDomainPath)){
+			String parameters = withInputFingerprints(String.valueOf(allTermsFromColumnDomainsIncluded), List.of(columnDomainsPath));
+			if(StageOutputs.areComplete(datasetDomainPath.getParent(), outputNames, DATASET_DOMAIN_DIR_NAME, parameters)) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+			}
+			else {
+				List<Path> columnDomainPaths;
+				try(Stream<Path> paths = Files.list(columnDomainsPath)){
+					columnDomainPaths = paths.sorted().collect(Collectors.toList());
+				}
+				try {
+					StageOutputs.write(datasetDomainPath.getParent(), outputNames, DATASET_DOMAIN_DIR_NAME, parameters, targetDirectory -> {
+						if(datasetDomainConsolidated) {
+							writeConsolidatedDatasetDomain(columnDomainPaths, targetDirectory.resolve(DATASET_DOMAIN_FILE_NAME));
+						}
+						else {
+							Path outputPath = targetDirectory.resolve(DATASET_DOMAIN_DIR_NAME);
+							ensureOutputDirExists(outputPath);
+							// Each column domain is written to its own file, so they can all be written at the same time
+							forEachColumnDomain(columnDomainPaths, columnDomainPath -> {
+								writeColumnDomainTermsUsedInDatasetDomain(columnDomainPath, outputPath);
+								return null;
+							});
+						}
+					});
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Writing " + datasetDomainPath + " was interrupted", e);
+				}
+				recordMeasurement(measurement, false, List.of(columnDomainsPath), List.of(datasetDomainPath), columnDomainPaths.size());
+			}
+			return datasetDomainPath;
 		}
-		return datasetDomainPath;
 	}
 
-	private boolean inputExists(Path inputPath) {
-		if(inputPath.toFile().exists()) {
-			return true;
+	/**
+	 * Write the dataset domain to a single consolidated file, in which each column domain is compressed separately.
+	 *
+	 * The column domains are read and compressed in parallel, and then written sequentially in the order of their names.
+	 */
+	private void writeConsolidatedDatasetDomain(List<Path> columnDomainPaths, Path consolidatedPath) throws IOException {
+		List<String> names = columnDomainPaths.stream().map(ColumnDomains::getName).collect(Collectors.toList());
+		List<byte[]> members = forEachColumnDomain(columnDomainPaths, columnDomainPath ->
+				ColumnDomains.compress(ColumnDomains.getName(columnDomainPath), readColumnDomainTermsUsedInDatasetDomain(columnDomainPath)));
+		ColumnDomains.writeConsolidated(names, members, consolidatedPath);
+	}
+
+	/**
+	 * Run the given task for each of the given column domains at the same time, on virtual threads if they are used and otherwise in a parallel stream.
+	 *
+	 * @return the result of the task for each column domain, in the order of the column domains.
+	 */
+	private <T> List<T> forEachColumnDomain(List<Path> columnDomainPaths, ColumnDomainTask<T> task) throws IOException {
+		if(virtualThreadsUsed) {
+			List<IoExecutors.IoTask<T>> tasks = new ArrayList<>();
+			for(Path columnDomainPath : columnDomainPaths) {
+				tasks.add(() -> task.run(columnDomainPath));
+			}
+			return IoExecutors.invokeAll(tasks, Runtime.getRuntime().availableProcessors());
 		}
-		else {
-			System.err.println(inputPath.toString() + " does not exist. Cannot continue without this.");
-			return false;
+		try {
+			return columnDomainPaths.parallelStream()
+					.map(columnDomainPath -> {
+						try {
+							return task.run(columnDomainPath);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					})
+					.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Write all dataset domain terms to a single term dictionary, next to the directory or file containing the dataset domain.
+	 *
+	 * This allows dataset discovery to load the dataset domain terms without parsing each JSON file again.
+	 */
+	private Path generateDatasetDomainDictionary(Path datasetDomainPath) throws IOException {
+		Path dictionaryPath = datasetDomainPath.resolveSibling(DATASET_DOMAIN_DICTIONARY_FILE_NAME);
+		try(StageMeasurement measurement = startMeasurement(DATASET_DOMAIN_DICTIONARY_FILE_NAME, dictionaryPath)){
+			String parameters = withInputFingerprints("", List.of(datasetDomainPath));
+			if(StageOutputs.isComplete(dictionaryPath, DATASET_DOMAIN_DICTIONARY_FILE_NAME, parameters)) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+			}
+			else {
+				Set<String> datasetDomainTerms = new HashSet<>();
+				ColumnDomains.forEach(datasetDomainPath, (name, columnDomain) -> datasetDomainTerms.addAll(columnDomain.getTerms()));
+				StageOutputs.writeOutput(dictionaryPath, DATASET_DOMAIN_DICTIONARY_FILE_NAME, parameters, outputPath -> TermDictionary.write(datasetDomainTerms, outputPath));
+				recordMeasurement(measurement, false, List.of(datasetDomainPath), List.of(dictionaryPath), datasetDomainTerms.size());
+			}
+			return dictionaryPath;
 		}
 	}
 
-	private boolean outputExists(Path outputPath) {
-		if(outputPath != null && outputPath.toFile().exists()) {
-			System.out.println(outputPath.toString() + " already exists. Skipping this step.");
+	private boolean inputExists(Path inputPath) {
+		if(inputPath.toFile().exists()) {
 			return true;
 		}
 		else {
+			System.err.println(inputPath.toString() + " does not exist. Cannot continue without this.");
 			return false;
 		}
 	}
@@ -160,16 +354,15 @@ public class DatasetDomainTerms {
 	    // ----------------------------------------------------------------
 	    try {
 	    	Path outputColumnsPath = outputDirectory.resolve(COLUMNS_DIR_NAME);
-	        if(!outputExists(outputColumnsPath)) {
+	    	runStage("columns", List.of(COLUMNS_DIR_NAME, COLUMNS_METADATA_FILE_NAME), List.of(domainRepresentativeDatasetsDirectory), "1000", targetDirectory ->
 				new D4().columns(
 		                domainRepresentativeDatasetsDirectory.toFile(),
-		                outputDirectory.resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
+		                targetDirectory.resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
 		                1000,
 		                6,
 		                true,
-		                outputColumnsPath.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(COLUMNS_DIR_NAME).toFile()
+		        ));
 	        return outputColumnsPath;
 	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Generating columns failed with exception: ");
@@ -184,8 +377,9 @@ public class DatasetDomainTerms {
 	    // GENERATE TERM INDEX
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputTermIndex = columnsPath.getParent().resolve(TERM_INDEX_FILE_NAME);
-	        if(!outputExists(outputTermIndex)) {
+	    	String termIndexFileName = intermediateFileName(TERM_INDEX_FILE_NAME);
+	        Path outputTermIndex = columnsPath.getParent().resolve(termIndexFileName);
+	        runStage("term-index", List.of(termIndexFileName), List.of(columnsPath), "GT0.5,10000000,false", targetDirectory ->
 				new D4().termIndex(
 						columnsPath.toFile(),
 		                Threshold.getConstraint("GT0.5"),
@@ -193,9 +387,8 @@ public class DatasetDomainTerms {
 		                false,
 		                6,
 		                true,
-		                outputTermIndex.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(termIndexFileName).toFile()
+		        ));
 	        return outputTermIndex;
 	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Generating term index failed with exception: ");
@@ -210,16 +403,16 @@ public class DatasetDomainTerms {
 	    // GENERATE EQUIVALENCE CLASSES
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputEquivalenceClasses = termIndexPath.getParent().resolve(EQUIVALENCE_CLASSES_FILE_NAME);
-	        if(!outputExists(outputEquivalenceClasses)) {
+	    	String equivalenceClassesFileName = intermediateFileName(EQUIVALENCE_CLASSES_FILE_NAME);
+	        Path outputEquivalenceClasses = termIndexPath.getParent().resolve(equivalenceClassesFileName);
+	        runStage("equivalence-classes", List.of(equivalenceClassesFileName), List.of(termIndexPath), "", targetDirectory ->
 				new D4().eqs(
 						termIndexPath.toFile(),
 		                true,
-		                outputEquivalenceClasses.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(equivalenceClassesFileName).toFile()
+		        ));
 	        return outputEquivalenceClasses;
-	    } catch (java.io.IOException ex) {
+	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Generating equivalence classes failed with exception: ");
 	    	ex.printStackTrace();
 	        System.exit(-1);
@@ -232,8 +425,9 @@ public class DatasetDomainTerms {
 	    // COMPUTE SIGNATURES
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputSignatures = equivalenceClassesPath.getParent().resolve(SIGNATURES_FILE_NAME);
-	        if(!outputExists(outputSignatures)) {
+	    	String signaturesFileName = intermediateFileName(SIGNATURES_FILE_NAME);
+	        Path outputSignatures = equivalenceClassesPath.getParent().resolve(signaturesFileName);
+	        runStage("signatures", List.of(signaturesFileName), List.of(equivalenceClassesPath), String.join(",", similarityAlgorithm, D4Config.ROBUST_LIBERAL, "false,false"), targetDirectory ->
 				new D4().signatures(
 						equivalenceClassesPath.toFile(),
 						similarityAlgorithm,
@@ -244,9 +438,8 @@ public class DatasetDomainTerms {
 		                6,
 		                true,
 		                new TelemetryPrinter(),
-		                outputSignatures.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(signaturesFileName).toFile()
+		        ));
 	        return outputSignatures;
 	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Computing signatures failed with exception: ");
@@ -261,8 +454,9 @@ public class DatasetDomainTerms {
 	    // EXPAND COLUMNS
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputExpandColumns = signaturesPath.getParent().resolve(EXPANDED_COLUMNS_FILE_NAME);
-	        if(!outputExists(outputExpandColumns)) {
+	    	String expandedColumnsFileName = intermediateFileName(EXPANDED_COLUMNS_FILE_NAME);
+	        Path outputExpandColumns = signaturesPath.getParent().resolve(expandedColumnsFileName);
+	        runStage("expanded-columns", List.of(expandedColumnsFileName), List.of(equivalenceClassesPath, signaturesPath), String.join(",", pruningStrategy, "GT0.25,5,0.05"), targetDirectory ->
 				new D4().expandColumns(
 						equivalenceClassesPath.toFile(),
 		                signaturesPath.toFile(),
@@ -273,11 +467,10 @@ public class DatasetDomainTerms {
 		                6,
 		                true,
 		                new TelemetryPrinter(),
-		                outputExpandColumns.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(expandedColumnsFileName).toFile()
+		        ));
 	        return outputExpandColumns;
-	    } catch (java.io.IOException ex) {
+	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Expanding columns failed with exception: ");
 	    	ex.printStackTrace();
 	        System.exit(-1);
@@ -290,16 +483,16 @@ public class DatasetDomainTerms {
 	    // EXPAND COLUMNS
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputNoExpandColumns = equivalenceClassesPath.getParent().resolve(EXPANDED_COLUMNS_FILE_NAME);
-	        if(!outputExists(outputNoExpandColumns)) {
+	    	String expandedColumnsFileName = intermediateFileName(EXPANDED_COLUMNS_FILE_NAME);
+	        Path outputNoExpandColumns = equivalenceClassesPath.getParent().resolve(expandedColumnsFileName);
+	        runStage("unexpanded-columns", List.of(expandedColumnsFileName), List.of(equivalenceClassesPath), "", targetDirectory ->
 				new D4().writeColumns(
 						equivalenceClassesPath.toFile(),
 		                true,
-		                outputNoExpandColumns.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(expandedColumnsFileName).toFile()
+		        ));
 	        return outputNoExpandColumns;
-	    } catch (java.io.IOException ex) {
+	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Non-expanding columns failed with exception: ");
 	    	ex.printStackTrace();
 	        System.exit(-1);
@@ -312,8 +505,9 @@ public class DatasetDomainTerms {
 	    // DISCOVER LOCAL DOMAINS
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputLocalDomains = expandedColumnsPath.getParent().resolve(LOCAL_DOMAINS_FILE_NAME);
-	        if(!outputExists(outputLocalDomains)) {
+	    	String localDomainsFileName = intermediateFileName(LOCAL_DOMAINS_FILE_NAME);
+	        Path outputLocalDomains = expandedColumnsPath.getParent().resolve(localDomainsFileName);
+	        runStage("local-domains", List.of(localDomainsFileName), List.of(equivalenceClassesPath, expandedColumnsPath, signaturesPath), String.join(",", D4Config.TRIMMER_CONSERVATIVE, "false,false"), targetDirectory ->
 				new D4().localDomains(
 		                equivalenceClassesPath.toFile(),
 		                expandedColumnsPath.toFile(),
@@ -324,11 +518,10 @@ public class DatasetDomainTerms {
 		                false,
 		                true,
 		                new TelemetryPrinter(),
-		                outputLocalDomains.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(localDomainsFileName).toFile()
+		        ));
 	        return outputLocalDomains;
-	    } catch (java.io.IOException ex) {
+	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Discovering local domains failed with exception: ");
 	    	ex.printStackTrace();
 	        System.exit(-1);
@@ -341,8 +534,9 @@ public class DatasetDomainTerms {
 	    // PRUNE STRONG DOMAINS
 	    // ----------------------------------------------------------------
 	    try {
-	        Path outputStrongDomains = localDomainsPath.getParent().resolve(COLUMN_DOMAINS_INTERNAL_FILE_NAME);
-	        if(!outputExists(outputStrongDomains)) {
+	    	String strongDomainsFileName = intermediateFileName(COLUMN_DOMAINS_INTERNAL_FILE_NAME);
+	        Path outputStrongDomains = localDomainsPath.getParent().resolve(strongDomainsFileName);
+	        runStage("strong-domains", List.of(strongDomainsFileName), List.of(equivalenceClassesPath, localDomainsPath), "GT0.5,GT0.1,0.25", targetDirectory ->
 				new D4().strongDomains(
 		                equivalenceClassesPath.toFile(),
 		                localDomainsPath.toFile(),
@@ -352,9 +546,8 @@ public class DatasetDomainTerms {
 		                6,
 		                true,
 		                new TelemetryPrinter(),
-		                outputStrongDomains.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(strongDomainsFileName).toFile()
+		        ));
 	        return outputStrongDomains;
 	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Pruning strong domains failed with exception: ");
@@ -370,19 +563,19 @@ public class DatasetDomainTerms {
 	    // ----------------------------------------------------------------
 	    try {
 	        Path outputExport = columnDomainsInternalFormatPath.getParent().resolve(COLUMN_DOMAINS_DIR_NAME);
-	        if(!outputExists(outputExport)) {
+	        Path columnsMetadataPath = columnDomainsInternalFormatPath.getParent().resolve(COLUMNS_METADATA_FILE_NAME);
+	        runStage("export", List.of(COLUMN_DOMAINS_DIR_NAME), List.of(equivalenceClassesPath, termIndexPath, columnsMetadataPath, columnDomainsInternalFormatPath), "100", targetDirectory ->
 				new D4().exportStrongDomains(
 		                equivalenceClassesPath.toFile(),
 		                termIndexPath.toFile(),
-		                columnDomainsInternalFormatPath.getParent().resolve(COLUMNS_METADATA_FILE_NAME).toFile(),
+		                columnsMetadataPath.toFile(),
 		                columnDomainsInternalFormatPath.toFile(),
 		                100,
 		                true,
-		                outputExport.toFile()
-		        );
-	        }
+		                targetDirectory.resolve(COLUMN_DOMAINS_DIR_NAME).toFile()
+		        ));
 			return outputExport;
-	    } catch (java.io.IOException ex) {
+	    } catch (java.lang.InterruptedException | java.io.IOException ex) {
 	    	System.err.print("Exporting strong domains failed with exception: ");
 	    	ex.printStackTrace();
 	        System.exit(-1);
@@ -390,37 +583,135 @@ public class DatasetDomainTerms {
 	    return null;
 	}
 
-	private void writeColumnDomainTermsUsedInDatasetDomain(Path columnDomainPath, Path datasetDomainPath) {
-		Path datasetDomainTermsForColumnDomain = datasetDomainPath.resolve(columnDomainPath.getFileName());
-		if(outputExists(datasetDomainTermsForColumnDomain)) {
+	/**
+	 * The name of an intermediate file in the output directory, in the configured codec unless it was already generated in another codec.
+	 */
+	private String intermediateFileName(String gzipFileName) throws IOException {
+		return intermediateCodec.resolveFileName(outputDirectory, gzipFileName);
+	}
+
+	/**
+	 * Run a stage, unless its outputs are already complete in the output directory.
+	 *
+	 * The outputs are written atomically and a manifest is recorded for each of them, see StageOutputs.
+	 * When an artifact store is configured, the outputs are reused from the artifact store or computed and stored there.
+	 * The key of the outputs is always recorded, so the stages that use these outputs can derive their own key from it.
+	 *
+	 * @param outputNames the names of the files or directories that the stage writes in the output directory.
+	 * @param inputs the paths to all inputs of the stage.
+	 * @param parameters all parameters that influence the outputs of the stage.
+	 */
+	private void runStage(String stageName, List<String> outputNames, List<Path> inputs, String parameters, StageAction action) throws IOException, InterruptedException {
+		try(StageMeasurement measurement = startMeasurement(stageName, outputDirectory.resolve(outputNames.get(0)))){
+			List<Path> outputs = new ArrayList<>();
+			for(String outputName : outputNames) {
+				outputs.add(outputDirectory.resolve(outputName));
+			}
+			String key = null;
+			if(artifactStore != null) {
+				List<String> inputKeys = new ArrayList<>();
+				for(Path input : inputs) {
+					inputKeys.add(getArtifactKey(input));
+				}
+				// The uncompressed outputs have different names, so they can not be linked from the artifact of the gzipped outputs
+				key = ArtifactStore.key(stageName, intermediateCodec.isCompressed() ? parameters : parameters + ";" + String.join(",", outputNames), inputKeys);
+				for(String outputName : outputNames) {
+					artifactKeys.put(outputDirectory.resolve(outputName), key + "/" + outputName);
+				}
+			}
+			String stageParameters = withInputFingerprints(parameters, inputs);
+			if(StageOutputs.areComplete(outputDirectory, outputNames, stageName, stageParameters)) {
+				recordMeasurement(measurement, true, List.of(), List.of(), -1);
+				return;
+			}
+			if(artifactStore == null) {
+				StageOutputs.write(outputDirectory, outputNames, stageName, stageParameters, action);
+			}
+			else {
+				artifactStore.materialize(stageName, key, outputDirectory, outputNames, action);
+				for(String outputName : outputNames) {
+					StageOutputs.writeManifest(outputDirectory.resolve(outputName), stageName, stageParameters);
+				}
+			}
+			recordMeasurement(measurement, false, inputs, outputs, -1);
+		}
+	}
+
+	private StageMeasurement startMeasurement(String stageName, Path output) {
+		return telemetrySink == null ? null : StageMeasurement.start(PIPELINE_NAME, stageName, output);
+	}
+
+	/**
+	 * Send the telemetry of a stage to the telemetry sink, if one is configured.
+	 *
+	 * The bytes read and written are the sizes of the inputs and outputs of the stage, which are not counted when the outputs were reused.
+	 */
+	private void recordMeasurement(StageMeasurement measurement, boolean reused, List<Path> inputs, List<Path> outputs, long items) throws IOException {
+		if(measurement == null) {
 			return;
 		}
+		long bytesRead = 0;
+		for(Path input : inputs) {
+			bytesRead += StageOutputs.size(input);
+		}
+		long bytesWritten = 0;
+		for(Path output : outputs) {
+			bytesWritten += StageOutputs.size(output);
+		}
+		telemetrySink.record(measurement.finish(reused, bytesRead, bytesWritten, items));
+	}
+
+	/**
+	 * Add the fingerprint of each input to the parameters of a stage, so the stage is redone when one of its inputs has changed.
+	 */
+	private static String withInputFingerprints(String parameters, List<Path> inputs) throws IOException {
+		StringBuilder stageParameters = new StringBuilder(parameters);
+		for(Path input : inputs) {
+			stageParameters.append(';').append(StageOutputs.fingerprint(input));
+		}
+		return stageParameters.toString();
+	}
+
+	/**
+	 * Retrieve the key of an output of an earlier stage, or calculate it for an input directory.
+	 */
+	private String getArtifactKey(Path input) throws IOException {
+		String key = artifactKeys.get(input);
+		if(key == null) {
+			key = ArtifactStore.inputDirectoryKey(input);
+			artifactKeys.put(input, key);
+		}
+		return key;
+	}
+
+	private ColumnDomain readColumnDomainTermsUsedInDatasetDomain(Path columnDomainPath) throws IOException {
 		try(Reader reader = Files.newBufferedReader(columnDomainPath)){
-    		ExportedStrongDomain strongDomain = new GsonBuilder()
-    				.create()
-    				.fromJson(reader, ExportedStrongDomain.class);
-	    	ColumnDomain columnDomain = new ColumnDomain();
-	    	columnDomain.setColumns(strongDomain.getColumns());
-	    	if(allTermsFromColumnDomainsIncluded) {
-	    		columnDomain.setTerms(strongDomain.getTerms().stream()
-	    				.flatMap(termsBlock -> termsBlock.stream())
-		    			.flatMap(eq -> eq.getTerms().stream())
-		    			.toList());
-	    	}
-	    	else {
-	    		columnDomain.setTerms(strongDomain.getTerms().get(0).stream()
-		    			.flatMap(eq -> eq.getTerms().stream())
-		    			.toList());
-	    	}
-
-	    	try(Writer writer = Files.newBufferedWriter(datasetDomainTermsForColumnDomain)){
-		    	new GsonBuilder()
-				.setPrettyPrinting()
-				.create()
-				.toJson(columnDomain, writer);
-	    	}
-    	} catch (IOException e) {
-			e.printStackTrace();
+			// Only the columns and the needed term blocks are read, the other term blocks are skipped without being created
+	    	return StrongDomainReader.read(reader, allTermsFromColumnDomainsIncluded);
 		}
 	}
+
+	/**
+	 * Write the terms of a single column domain that are used in the dataset domain.
+	 *
+	 * This fails when the column domain can not be read or written, so the stage is not completed with a missing column domain.
+	 */
+	private void writeColumnDomainTermsUsedInDatasetDomain(Path columnDomainPath, Path datasetDomainPath) throws IOException {
+		Path datasetDomainTermsForColumnDomain = datasetDomainPath.resolve(columnDomainPath.getFileName());
+    	ColumnDomain columnDomain = readColumnDomainTermsUsedInDatasetDomain(columnDomainPath);
+    	try(Writer writer = Files.newBufferedWriter(datasetDomainTermsForColumnDomain)){
+	    	new GsonBuilder()
+			.setPrettyPrinting()
+			.create()
+			.toJson(columnDomain, writer);
+    	}
+	}
+
+	/**
+	 * A task that is run for a single column domain.
+	 */
+	@FunctionalInterface
+	private interface ColumnDomainTask<T> {
+		T run(Path columnDomainPath) throws IOException;
+	}
 }
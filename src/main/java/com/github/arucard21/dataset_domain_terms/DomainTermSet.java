@@ -0,0 +1,25 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.util.function.Consumer;
+
+/**
+ * The set of dataset domain terms that the terms of a target dataset are matched against.
+ *
+ * Implementations must allow concurrent lookups, since multiple datasets can be matched at the same time.
+ */
+public interface DomainTermSet {
+	/**
+	 * Check whether the given term is one of the dataset domain terms.
+	 */
+	boolean contains(String term);
+
+	/**
+	 * The number of distinct dataset domain terms.
+	 */
+	long size();
+
+	/**
+	 * Perform the given action for each dataset domain term.
+	 */
+	void forEach(Consumer<String> action);
+}
@@ -0,0 +1,207 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Dataset domain terms that are kept outside of the heap, in a hash table that allows constant-time lookups.
+ *
+ * The UTF-8 bytes of the terms are appended to a single direct buffer, each preceded by their length. The hash table is another
+ * direct buffer with open addressing and linear probing, where each slot holds the hash of a term and its offset in the first buffer.
+ * This avoids an object for each term, so large sets of terms neither take up the heap nor slow down garbage collection.
+ *
+ * A lookup hashes the characters of the term with the hash of the Bloom filter and compares them to the stored bytes while they are
+ * encoded, so it does not allocate. Terms can only be added before the lookups start, since adding a term is not thread-safe.
+ */
+public class OffHeapDomainTermSet implements DomainTermSet {
+	private static final int MINIMUM_SLOT_COUNT = 16;
+	/**
+	 * The largest number of slots, since the hash table must fit in a single buffer.
+	 */
+	private static final int MAXIMUM_SLOT_COUNT = 1 << 27;
+	private static final double MAXIMUM_LOAD_FACTOR = 0.5d;
+	private static final int ESTIMATED_TERM_LENGTH = 16;
+
+	private ByteBuffer terms;
+	private ByteBuffer slots;
+	private int slotCount;
+	private long size = 0;
+
+	private OffHeapDomainTermSet(int termsCapacity, int slotCount) {
+		this.terms = ByteBuffer.allocateDirect(termsCapacity);
+		this.slots = ByteBuffer.allocateDirect(slotCount * Long.BYTES);
+		this.slotCount = slotCount;
+	}
+
+	/**
+	 * Create an empty set of terms that is sized for the given number of terms. It grows when more terms are added.
+	 */
+	public static OffHeapDomainTermSet create(long expectedTermCount) {
+		long termCount = Math.max(1, expectedTermCount);
+		int slotCount = MINIMUM_SLOT_COUNT;
+		while(slotCount < MAXIMUM_SLOT_COUNT && slotCount * MAXIMUM_LOAD_FACTOR < termCount) {
+			slotCount <<= 1;
+		}
+		int termsCapacity = (int) Math.min(Integer.MAX_VALUE - 8, termCount * (Integer.BYTES + ESTIMATED_TERM_LENGTH));
+		return new OffHeapDomainTermSet(termsCapacity, slotCount);
+	}
+
+	/**
+	 * Copy the given dataset domain terms out of the heap, or out of the file that they are stored in.
+	 */
+	public static OffHeapDomainTermSet copyOf(DomainTermSet datasetDomainTerms) {
+		OffHeapDomainTermSet offHeapTerms = create(datasetDomainTerms.size());
+		datasetDomainTerms.forEach(offHeapTerms::add);
+		return offHeapTerms;
+	}
+
+	/**
+	 * Add the given term, unless it was already added.
+	 *
+	 * @return whether the term was added.
+	 */
+	public boolean add(String term) {
+		int hash = (int) BloomFilter.hash(term);
+		int slot = findSlot(term, hash);
+		if(slots.getLong(slot * Long.BYTES) != 0) {
+			return false;
+		}
+		byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+		int offset = append(bytes);
+		slots.putLong(slot * Long.BYTES, toSlot(hash, offset));
+		size++;
+		if(size > slotCount * MAXIMUM_LOAD_FACTOR) {
+			resize();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(String term) {
+		return slots.getLong(findSlot(term, (int) BloomFilter.hash(term)) * Long.BYTES) != 0;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Perform the given action for each term, in the order in which they were added.
+	 */
+	@Override
+	public void forEach(Consumer<String> action) {
+		int position = 0;
+		byte[] bytes = new byte[0];
+		while(position < terms.position()) {
+			int length = terms.getInt(position);
+			if(bytes.length < length) {
+				bytes = new byte[length];
+			}
+			terms.get(position + Integer.BYTES, bytes, 0, length);
+			action.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+			position += Integer.BYTES + length;
+		}
+	}
+
+	/**
+	 * Find the slot that holds the given term, or the empty slot where it would be added.
+	 */
+	private int findSlot(String term, int hash) {
+		int mask = slotCount - 1;
+		for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			long value = slots.getLong(slot * Long.BYTES);
+			if(value == 0 || ((int) (value >>> 32) == hash && matches((int) value - 1, term))) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Compare the term at the given offset to the UTF-8 encoding of the given term, which is encoded one character at a time.
+	 */
+	private boolean matches(int offset, String term) {
+		int length = terms.getInt(offset);
+		int position = offset + Integer.BYTES;
+		int end = position + length;
+		for(int i = 0; i < term.length(); i++) {
+			int codePoint = term.charAt(i);
+			if(Character.isHighSurrogate((char) codePoint) && i + 1 < term.length() && Character.isLowSurrogate(term.charAt(i + 1))) {
+				codePoint = Character.toCodePoint((char) codePoint, term.charAt(++i));
+			}
+			else if(Character.isSurrogate((char) codePoint)) {
+				// An unpaired surrogate is encoded as a replacement byte, like String.getBytes() does
+				codePoint = '?';
+			}
+			int encodedLength = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+			if(position + encodedLength > end) {
+				return false;
+			}
+			for(int byteIndex = 0; byteIndex < encodedLength; byteIndex++) {
+				if(terms.get(position++) != encodedByte(codePoint, encodedLength, byteIndex)) {
+					return false;
+				}
+			}
+		}
+		return position == end;
+	}
+
+	private static byte encodedByte(int codePoint, int encodedLength, int byteIndex) {
+		if(encodedLength == 1) {
+			return (byte) codePoint;
+		}
+		int shift = 6 * (encodedLength - 1 - byteIndex);
+		if(byteIndex == 0) {
+			return (byte) ((0xF00 >>> encodedLength) | (codePoint >>> shift));
+		}
+		return (byte) (0x80 | ((codePoint >>> shift) & 0x3F));
+	}
+
+	private int append(byte[] bytes) {
+		int required = Integer.BYTES + bytes.length;
+		if(terms.remaining() < required) {
+			long capacity = Math.max((long) terms.capacity() * 2, (long) terms.position() + required);
+			if((long) terms.position() + required > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The terms do not fit in a single off-heap buffer of at most 2 GB");
+			}
+			ByteBuffer grownTerms = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE - 8, capacity));
+			terms.flip();
+			grownTerms.put(terms);
+			terms = grownTerms;
+		}
+		int offset = terms.position();
+		terms.putInt(bytes.length);
+		terms.put(bytes);
+		return offset;
+	}
+
+	private void resize() {
+		if(slotCount >= MAXIMUM_SLOT_COUNT) {
+			if(size >= slotCount - 1) {
+				throw new IllegalStateException("The hash table can not hold more than " + (MAXIMUM_SLOT_COUNT - 1) + " terms");
+			}
+			return;
+		}
+		int grownSlotCount = slotCount << 1;
+		ByteBuffer grownSlots = ByteBuffer.allocateDirect(grownSlotCount * Long.BYTES);
+		int mask = grownSlotCount - 1;
+		for(int slot = 0; slot < slotCount; slot++) {
+			long value = slots.getLong(slot * Long.BYTES);
+			if(value != 0) {
+				int grownSlot = (int) (value >>> 32) & mask;
+				while(grownSlots.getLong(grownSlot * Long.BYTES) != 0) {
+					grownSlot = (grownSlot + 1) & mask;
+				}
+				grownSlots.putLong(grownSlot * Long.BYTES, value);
+			}
+		}
+		slots = grownSlots;
+		slotCount = grownSlotCount;
+	}
+
+	private static long toSlot(int hash, int offset) {
+		// The offset is stored plus one, so an empty slot is 0
+		return ((long) hash << 32) | ((offset + 1L) & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,91 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.arucard21.dataset_domain_terms.objects.ColumnDomain;
+import com.github.arucard21.dataset_domain_terms.objects.ExportedColumn;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reads an exported strong domain into a column domain, without deserializing the whole ExportedStrongDomain.
+ *
+ * The exported strong domain is streamed, so only its columns and the terms of the needed term blocks are created.
+ * The other term blocks, as well as the identifier, term count and weight of each equivalence class, are skipped while they are read.
+ */
+class StrongDomainReader {
+	private static final Gson GSON = new Gson();
+
+	private StrongDomainReader() {}
+
+	/**
+	 * Read the columns and the terms of an exported strong domain.
+	 *
+	 * @param allTermBlocksIncluded whether the terms of all term blocks are included, instead of only those of the first term block.
+	 */
+	static ColumnDomain read(Reader reader, boolean allTermBlocksIncluded) throws IOException {
+		JsonReader json = new JsonReader(reader);
+		List<ExportedColumn> columns = new ArrayList<>();
+		List<String> terms = new ArrayList<>();
+		json.beginObject();
+		while(json.hasNext()) {
+			switch(json.nextName()) {
+			case "columns":
+				json.beginArray();
+				while(json.hasNext()) {
+					columns.add(GSON.fromJson(json, ExportedColumn.class));
+				}
+				json.endArray();
+				break;
+			case "terms":
+				readTermBlocks(json, allTermBlocksIncluded, terms);
+				break;
+			default:
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		ColumnDomain columnDomain = new ColumnDomain();
+		columnDomain.setColumns(columns);
+		columnDomain.setTerms(terms);
+		return columnDomain;
+	}
+
+	private static void readTermBlocks(JsonReader json, boolean allTermBlocksIncluded, List<String> terms) throws IOException {
+		json.beginArray();
+		boolean firstTermBlock = true;
+		while(json.hasNext()) {
+			if(!firstTermBlock && !allTermBlocksIncluded) {
+				json.skipValue();
+				continue;
+			}
+			firstTermBlock = false;
+			json.beginArray();
+			while(json.hasNext()) {
+				readEquivalenceClassTerms(json, terms);
+			}
+			json.endArray();
+		}
+		json.endArray();
+	}
+
+	private static void readEquivalenceClassTerms(JsonReader json, List<String> terms) throws IOException {
+		json.beginObject();
+		while(json.hasNext()) {
+			if("terms".equals(json.nextName())) {
+				json.beginArray();
+				while(json.hasNext()) {
+					terms.add(json.nextString());
+				}
+				json.endArray();
+			}
+			else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+	}
+}
@@ -0,0 +1,279 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * A sorted, front-coded dictionary of terms that is memory-mapped from disk.
+ *
+ * The terms are sorted by their UTF-8 bytes and stored in blocks. The first term of each block is stored in full,
+ * the other terms only store the length of the prefix they share with the previous term followed by the remaining bytes.
+ * A lookup does a binary search over the first term of each block and then scans a single block.
+ *
+ * The file consists of a header (magic number, block size), the blocks, the offset of each block and a footer
+ * (term count, block count, length of the longest term, start of the block offsets).
+ */
+public class TermDictionary implements DomainTermSet {
+	private static final int MAGIC = 0x44544431; // "DTD1"
+	private static final int DEFAULT_BLOCK_SIZE = 16;
+	private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+	private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+
+	private final MappedByteBuffer buffer;
+	private final int blockSize;
+	private final long termCount;
+	private final int blockCount;
+	private final int maxTermLength;
+	private final int blockOffsetsStart;
+
+	private TermDictionary(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.limit() < HEADER_SIZE + FOOTER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("The file is not a valid term dictionary");
+		}
+		this.blockSize = buffer.getInt(Integer.BYTES);
+		int footerStart = buffer.limit() - FOOTER_SIZE;
+		this.termCount = buffer.getLong(footerStart);
+		this.blockCount = buffer.getInt(footerStart + Long.BYTES);
+		this.maxTermLength = buffer.getInt(footerStart + Long.BYTES + Integer.BYTES);
+		this.blockOffsetsStart = buffer.getInt(footerStart + Long.BYTES + Integer.BYTES + Integer.BYTES);
+	}
+
+	/**
+	 * Memory-map an existing term dictionary.
+	 */
+	public static TermDictionary open(Path dictionaryPath) throws IOException {
+		try(FileChannel channel = FileChannel.open(dictionaryPath, StandardOpenOption.READ)){
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format("The term dictionary %s is too large to be memory-mapped", dictionaryPath));
+			}
+			return new TermDictionary(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Write the given terms to a new term dictionary.
+	 *
+	 * @return the number of distinct terms that were written.
+	 */
+	public static long write(Collection<String> terms, Path dictionaryPath) throws IOException {
+		Iterator<byte[]> sortedTerms = terms.stream()
+				.map(term -> term.getBytes(StandardCharsets.UTF_8))
+				.sorted(Arrays::compareUnsigned)
+				.iterator();
+		return write(sortedTerms, dictionaryPath);
+	}
+
+	/**
+	 * Write the given UTF-8 encoded terms to a new term dictionary.
+	 *
+	 * The terms must already be sorted by their unsigned bytes. Duplicate terms are only written once.
+	 *
+	 * @return the number of distinct terms that were written.
+	 */
+	public static long write(Iterator<byte[]> sortedTerms, Path dictionaryPath) throws IOException {
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dictionaryPath)))){
+			output.writeInt(MAGIC);
+			output.writeInt(DEFAULT_BLOCK_SIZE);
+			int[] blockOffsets = new int[16];
+			int blockCount = 0;
+			long termCount = 0;
+			int maxTermLength = 0;
+			byte[] previous = null;
+			while(sortedTerms.hasNext()) {
+				byte[] term = sortedTerms.next();
+				if(previous != null) {
+					int comparison = Arrays.compareUnsigned(previous, term);
+					if(comparison == 0) {
+						continue;
+					}
+					if(comparison > 0) {
+						throw new IllegalArgumentException("The terms for the term dictionary must be sorted");
+					}
+				}
+				if(termCount % DEFAULT_BLOCK_SIZE == 0) {
+					if(blockCount == blockOffsets.length) {
+						blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+					}
+					blockOffsets[blockCount++] = output.size();
+					writeVarInt(output, term.length);
+					output.write(term);
+				}
+				else {
+					int prefixLength = Arrays.mismatch(previous, term);
+					writeVarInt(output, prefixLength);
+					writeVarInt(output, term.length - prefixLength);
+					output.write(term, prefixLength, term.length - prefixLength);
+				}
+				maxTermLength = Math.max(maxTermLength, term.length);
+				termCount++;
+				previous = term;
+			}
+			int blockOffsetsStart = output.size();
+			for(int i = 0; i < blockCount; i++) {
+				output.writeInt(blockOffsets[i]);
+			}
+			output.writeLong(termCount);
+			output.writeInt(blockCount);
+			output.writeInt(maxTermLength);
+			output.writeInt(blockOffsetsStart);
+			if(output.size() == Integer.MAX_VALUE) {
+				throw new IOException(String.format("The term dictionary %s is too large", dictionaryPath));
+			}
+			return termCount;
+		}
+	}
+
+	@Override
+	public boolean contains(String term) {
+		return ordinalOf(term.getBytes(StandardCharsets.UTF_8)) >= 0;
+	}
+
+	@Override
+	public long size() {
+		return termCount;
+	}
+
+	/**
+	 * Perform the given action for each term, in the sorted order of this dictionary.
+	 */
+	@Override
+	public void forEach(Consumer<String> action) {
+		byte[] current = new byte[maxTermLength];
+		for(int block = 0; block < blockCount; block++) {
+			int position = blockOffset(block);
+			int currentLength = readVarInt(position);
+			position += varIntSize(currentLength);
+			buffer.get(position, current, 0, currentLength);
+			position += currentLength;
+			action.accept(new String(current, 0, currentLength, StandardCharsets.UTF_8));
+			long firstOrdinal = (long) block * blockSize;
+			long lastOrdinal = Math.min(firstOrdinal + blockSize, termCount);
+			for(long ordinal = firstOrdinal + 1; ordinal < lastOrdinal; ordinal++) {
+				int prefixLength = readVarInt(position);
+				position += varIntSize(prefixLength);
+				int suffixLength = readVarInt(position);
+				position += varIntSize(suffixLength);
+				buffer.get(position, current, prefixLength, suffixLength);
+				position += suffixLength;
+				action.accept(new String(current, 0, prefixLength + suffixLength, StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	/**
+	 * Find the position of the given UTF-8 encoded term in the sorted order of this dictionary.
+	 *
+	 * @return the ordinal of the term, or -1 if the term is not in this dictionary.
+	 */
+	public long ordinalOf(byte[] term) {
+		if(term.length > maxTermLength) {
+			return -1;
+		}
+		int low = 0;
+		int high = blockCount - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareFirstTermOfBlock(middle, term);
+			if(comparison < 0) {
+				low = middle + 1;
+			}
+			else if(comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return (long) middle * blockSize;
+			}
+		}
+		if(high < 0) {
+			return -1;
+		}
+		return scanBlock(high, term);
+	}
+
+	private int compareFirstTermOfBlock(int block, byte[] term) {
+		int position = blockOffset(block);
+		int length = readVarInt(position);
+		position += varIntSize(length);
+		int commonLength = Math.min(length, term.length);
+		for(int i = 0; i < commonLength; i++) {
+			int comparison = Byte.compareUnsigned(buffer.get(position + i), term[i]);
+			if(comparison != 0) {
+				return comparison;
+			}
+		}
+		return Integer.compare(length, term.length);
+	}
+
+	private long scanBlock(int block, byte[] term) {
+		byte[] current = new byte[maxTermLength];
+		int position = blockOffset(block);
+		int currentLength = readVarInt(position);
+		position += varIntSize(currentLength);
+		buffer.get(position, current, 0, currentLength);
+		position += currentLength;
+		long firstOrdinal = (long) block * blockSize;
+		long lastOrdinal = Math.min(firstOrdinal + blockSize, termCount);
+		for(long ordinal = firstOrdinal + 1; ordinal < lastOrdinal; ordinal++) {
+			int prefixLength = readVarInt(position);
+			position += varIntSize(prefixLength);
+			int suffixLength = readVarInt(position);
+			position += varIntSize(suffixLength);
+			buffer.get(position, current, prefixLength, suffixLength);
+			position += suffixLength;
+			currentLength = prefixLength + suffixLength;
+			int comparison = Arrays.compareUnsigned(current, 0, currentLength, term, 0, term.length);
+			if(comparison == 0) {
+				return ordinal;
+			}
+			if(comparison > 0) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private int blockOffset(int block) {
+		return buffer.getInt(blockOffsetsStart + block * Integer.BYTES);
+	}
+
+	private int readVarInt(int position) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = buffer.get(position++);
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		} while((current & 0x80) != 0);
+		return value;
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+}
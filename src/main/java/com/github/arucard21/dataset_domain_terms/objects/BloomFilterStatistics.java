@@ -0,0 +1,54 @@
+package com.github.arucard21.dataset_domain_terms.objects;
+
+public class BloomFilterStatistics {
+	private final long bitCount;
+	private final int hashCount;
+	private final double configuredFalsePositiveRate;
+	private final long rejected;
+	private final long matched;
+	private final long falsePositives;
+	private final double observedFalsePositiveRate;
+
+	public BloomFilterStatistics(long bitCount, int hashCount, double configuredFalsePositiveRate, long rejected, long matched, long falsePositives) {
+		this.bitCount = bitCount;
+		this.hashCount = hashCount;
+		this.configuredFalsePositiveRate = configuredFalsePositiveRate;
+		this.rejected = rejected;
+		this.matched = matched;
+		this.falsePositives = falsePositives;
+		this.observedFalsePositiveRate = (rejected + falsePositives) > 0 ?
+				falsePositives*1d/(rejected + falsePositives)
+				: 0;
+	}
+
+	public long getBitCount() {
+		return bitCount;
+	}
+	public int getHashCount() {
+		return hashCount;
+	}
+	public double getConfiguredFalsePositiveRate() {
+		return configuredFalsePositiveRate;
+	}
+	/**
+	 * The number of lookups that the Bloom filter rejected without an exact lookup.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+	/**
+	 * The number of lookups that passed the Bloom filter and were a dataset domain term.
+	 */
+	public long getMatched() {
+		return matched;
+	}
+	/**
+	 * The number of lookups that passed the Bloom filter but were not a dataset domain term.
+	 */
+	public long getFalsePositives() {
+		return falsePositives;
+	}
+	public double getObservedFalsePositiveRate() {
+		return observedFalsePositiveRate;
+	}
+}
@@ -0,0 +1,15 @@
+package com.github.arucard21.dataset_domain_terms.objects;
+
+/**
+ * A column domain along with its name, as it is stored in a consolidated dataset domain.
+ */
+public class NamedColumnDomain extends ColumnDomain {
+	private String name;
+
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+}
@@ -17,6 +17,9 @@ import com.github.arucard21.dataset_discovery.objects.DatasetSimilarity;
 import com.github.arucard21.dataset_discovery.objects.MatchingResult;
 import com.github.arucard21.dataset_domain_terms.DatasetDomainTerms;
 import com.github.arucard21.evaluation.objects.ResultValidation;
+import com.github.arucard21.pipeline.JfrTelemetrySink;
+import com.github.arucard21.pipeline.JsonLinesTelemetrySink;
+import com.github.arucard21.pipeline.TelemetrySink;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -26,6 +29,7 @@ public class Experiments {
 	public static final Path INPUT_DIR = Paths.get("input");
 	public static final Path VARIATIONS_OUTPUT_DIR= Paths.get("output-variations");
 	public static final Path VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_DIR = VARIATIONS_OUTPUT_DIR.resolve("domain-representation");
+	public static final Path VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR = VARIATIONS_OUTPUT_DIR.resolve("artifact-store");
 	public static final Path VARIATIONS_OUTPUT_DOMAIN_SIMILARITY_DIR = VARIATIONS_OUTPUT_DIR.resolve("domain-similarity");
 	public static final Path VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_PRECISION_OPTIMIZED = VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_DIR.resolve("precision");
 	public static final Path VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_PRECISION_OPTIMIZED_TF = VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_DIR.resolve("precision-tf");
@@ -37,6 +41,7 @@ public class Experiments {
 	public static final Path EVALUATION_FIFA_PLAYERS_OUTPUT_DIR= Paths.get("output-evaluation-fifa-players");
 	public static final String EVALUATION_DOMAIN_REPRESENTATION_DIR = "domain-representation";
 	public static final String DATASET_RESULT_VALIDATION_FILE_NAME = "result_validation.json";
+	public static final String TELEMETRY_FILE_NAME = "telemetry.jsonl";
 
 	public static final String JACCARD_INDEX = D4Config.EQSIM_JI;
 	public static final String TERM_FREQUENCY_BASED_JACCARD = D4Config.EQSIM_TFICF;
@@ -138,30 +143,35 @@ public class Experiments {
 				.pruningStrategy(TRIMMER_CONSERVATIVE)
 				.columnExpansionDisabled(false)
 				.allTermsFromColumnDomainsIncluded(false)
+				.artifactStore(VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR)
 				.generate();
 		Path termFreqDatasetDomainPath = new DatasetDomainTerms(MOVIE_DOMAIN_INPUT_DATASETS_COMBINED, VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_PRECISION_OPTIMIZED_TF)
 				.similarityAlgorithm(TERM_FREQUENCY_BASED_JACCARD)
 				.pruningStrategy(TRIMMER_CONSERVATIVE)
 				.columnExpansionDisabled(false)
 				.allTermsFromColumnDomainsIncluded(false)
+				.artifactStore(VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR)
 				.generate();
 		Path accuracyDatasetDomainPath = new DatasetDomainTerms(MOVIE_DOMAIN_INPUT_DATASETS_COMBINED, VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_ACCURACY_OPTIMIZED)
 				.similarityAlgorithm(JACCARD_INDEX)
 				.pruningStrategy(TRIMMER_CENTRIST)
 				.columnExpansionDisabled(false)
 				.allTermsFromColumnDomainsIncluded(false)
+				.artifactStore(VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR)
 				.generate();
 		Path noExpandDatasetDomainPath = new DatasetDomainTerms(MOVIE_DOMAIN_INPUT_DATASETS_COMBINED, VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_NO_EXPAND)
 				.similarityAlgorithm(JACCARD_INDEX)
 				.pruningStrategy(TRIMMER_CONSERVATIVE)
 				.columnExpansionDisabled(true)
 				.allTermsFromColumnDomainsIncluded(false)
+				.artifactStore(VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR)
 				.generate();
 		Path allTermsDatasetDomainPath = new DatasetDomainTerms(MOVIE_DOMAIN_INPUT_DATASETS_COMBINED, VARIATIONS_OUTPUT_DOMAIN_REPRESENTATION_ALL_TERMS)
 				.similarityAlgorithm(JACCARD_INDEX)
 				.pruningStrategy(TRIMMER_CONSERVATIVE)
 				.columnExpansionDisabled(false)
 				.allTermsFromColumnDomainsIncluded(true)
+				.artifactStore(VARIATIONS_OUTPUT_ARTIFACT_STORE_DIR)
 				.generate();
     	for(Path inputDataset: VARIATIONS_INPUT_DATASETS) {
     		calculateSimilarityToTargetDatasetForAllVariations(
@@ -190,13 +200,18 @@ public class Experiments {
 
 	private static void evaluateAccuracyForDatasetDomain(Path domainDatasetsCombinedPath, Map<String, Boolean> domainTruth, Path outputPath) throws IOException {
 		Path domainRepresentationOutputPath = outputPath.resolve(EVALUATION_DOMAIN_REPRESENTATION_DIR);
-		Path evaluationMovieDomainPath = new DatasetDomainTerms(domainDatasetsCombinedPath, domainRepresentationOutputPath)
-				.similarityAlgorithm(JACCARD_INDEX)
-				.pruningStrategy(TRIMMER_CONSERVATIVE)
-				.columnExpansionDisabled(false)
-				.allTermsFromColumnDomainsIncluded(false)
-				.generate();
-		ResultValidation resultValidationMovieDomain = evaluateAccuracy(evaluationMovieDomainPath, domainTruth, EVALUATION_INPUT_DATASETS_RANDOM_ORDER, outputPath);
+		ResultValidation resultValidationMovieDomain;
+		try(JsonLinesTelemetrySink telemetryFile = new JsonLinesTelemetrySink(outputPath.resolve(TELEMETRY_FILE_NAME))){
+			TelemetrySink telemetrySink = TelemetrySink.of(telemetryFile, new JfrTelemetrySink());
+			Path evaluationMovieDomainPath = new DatasetDomainTerms(domainDatasetsCombinedPath, domainRepresentationOutputPath)
+					.similarityAlgorithm(JACCARD_INDEX)
+					.pruningStrategy(TRIMMER_CONSERVATIVE)
+					.columnExpansionDisabled(false)
+					.allTermsFromColumnDomainsIncluded(false)
+					.telemetrySink(telemetrySink)
+					.generate();
+			resultValidationMovieDomain = evaluateAccuracy(evaluationMovieDomainPath, domainTruth, EVALUATION_INPUT_DATASETS_RANDOM_ORDER, outputPath, telemetrySink);
+		}
 		System.out.println("For the domain from: " + domainDatasetsCombinedPath.getFileName().toString());
 		System.out.println("Accuracy: "+resultValidationMovieDomain.getAccuracy());
 		System.out.println("Precision: "+resultValidationMovieDomain.getPrecision());
@@ -209,8 +224,9 @@ public class Experiments {
 	}
 
 
-	private static ResultValidation evaluateAccuracy(Path datasetDomainPath, Map<String, Boolean> domainTruth, List<Path> inputDatasets, Path outputPath) throws IOException {
-		DatasetDiscovery datasetDiscoveryForDomain = new DatasetDiscovery(datasetDomainPath, outputPath, inputDatasets);
+	private static ResultValidation evaluateAccuracy(Path datasetDomainPath, Map<String, Boolean> domainTruth, List<Path> inputDatasets, Path outputPath, TelemetrySink telemetrySink) throws IOException {
+		DatasetDiscovery datasetDiscoveryForDomain = new DatasetDiscovery(datasetDomainPath, outputPath, inputDatasets)
+				.telemetrySink(telemetrySink);
 		Set<String> similarDatasets = datasetDiscoveryForDomain.discoverDatasetsFocusedOnSameDomain();
 		List<DatasetSimilarity> datasetSimilarityScores = datasetDiscoveryForDomain.getDatasetSimilarityScores();
 		ResultValidation resultValidationOriginalOrder = validateResults(domainTruth, datasetSimilarityScores, similarDatasets, outputPath);
@@ -292,6 +308,9 @@ public class Experiments {
 		Path outputForDataset = outputDirPath.resolve(datasetFolderName.getFileName());
 		Path similarityScoresCsvPath = outputForDataset.resolve(DatasetDiscovery.DATASET_SIMILARITY_SCORES_CSV_NAME);
 		if(!outputExists(similarityScoresCsvPath)) {
+			// Match against all variations in a single pass over the term index, the dataset discovery for each variation then reuses these matching results
+			new DatasetDiscovery(domainRepresentationVariationPaths[0], outputDirPath, List.of(datasetFolderName))
+					.calculateSimilarityToDomainRepresentations(datasetFolderName, List.of(domainRepresentationVariationPaths));
 			for(Path domainRepresentationVariationPath: domainRepresentationVariationPaths) {
 				new DatasetDiscovery(domainRepresentationVariationPath, outputDirPath, List.of(datasetFolderName)).discoverDatasetsFocusedOnSameDomain();
 
@@ -0,0 +1,90 @@
+package com.github.arucard21.pipeline;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression of intermediate files, i.e. the files that stages write for later stages.
+ *
+ * D4 detects whether a file is gzipped from its name, both when writing and when reading it. So the codec of the intermediate files
+ * that D4 writes is chosen through their names, while those files are always compressed with the default level when they are gzipped.
+ * Intermediate files that are written by this project itself are compressed with the level of the codec.
+ */
+public enum IntermediateCodec {
+	/**
+	 * Intermediate files are not compressed, which is fastest when they are written to a fast local disk.
+	 */
+	NONE(null, Deflater.NO_COMPRESSION),
+	/**
+	 * Intermediate files are gzipped with the fastest compression level.
+	 */
+	GZIP_FAST(".gz", Deflater.BEST_SPEED),
+	/**
+	 * Intermediate files are gzipped with the default compression level, which is smaller when they are archived.
+	 */
+	GZIP(".gz", Deflater.DEFAULT_COMPRESSION);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final String suffix;
+	private final int level;
+
+	private IntermediateCodec(String suffix, int level) {
+		this.suffix = suffix;
+		this.level = level;
+	}
+
+	public boolean isCompressed() {
+		return suffix != null;
+	}
+
+	/**
+	 * The name of an intermediate file in this codec, given its name when it is gzipped.
+	 */
+	public String fileName(String gzipFileName) {
+		if(!gzipFileName.endsWith(GZIP.suffix)) {
+			throw new IllegalArgumentException(String.format("The file name %s does not end with %s", gzipFileName, GZIP.suffix));
+		}
+		String uncompressedFileName = gzipFileName.substring(0, gzipFileName.length() - GZIP.suffix.length());
+		return isCompressed() ? uncompressedFileName + suffix : uncompressedFileName;
+	}
+
+	/**
+	 * The name of an intermediate file in the given directory.
+	 *
+	 * This is the name in this codec, unless only an earlier complete output in another codec exists. That output is then reused when the codec is changed.
+	 */
+	public String resolveFileName(Path directory, String gzipFileName) throws IOException {
+		String fileName = fileName(gzipFileName);
+		if(Files.exists(directory.resolve(fileName))) {
+			return fileName;
+		}
+		for(IntermediateCodec codec : values()) {
+			String existingFileName = codec.fileName(gzipFileName);
+			if(Files.exists(directory.resolve(existingFileName)) && StageOutputs.readManifest(directory.resolve(existingFileName)) != null) {
+				return existingFileName;
+			}
+		}
+		return fileName;
+	}
+
+	/**
+	 * Open a buffered stream that writes an intermediate file in this codec.
+	 */
+	public OutputStream newOutputStream(Path path) throws IOException {
+		OutputStream output = Files.newOutputStream(path);
+		if(!isCompressed()) {
+			return new BufferedOutputStream(output, BUFFER_SIZE);
+		}
+		return new GZIPOutputStream(output, BUFFER_SIZE) {
+			{
+				def.setLevel(level);
+			}
+		};
+	}
+}
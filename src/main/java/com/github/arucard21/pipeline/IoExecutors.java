@@ -0,0 +1,137 @@
+package com.github.arucard21.pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors for tasks that mostly wait on file I/O, like reading term indexes and column domains or writing results.
+ *
+ * On Java 21 and later, each task runs on its own virtual thread, so many of them can wait on I/O at the same time without a large thread pool.
+ * This project targets Java 17, so virtual threads are created through reflection. On earlier versions, the tasks run on a fixed pool of platform threads instead.
+ */
+public final class IoExecutors {
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+
+	private IoExecutors() {}
+
+	/**
+	 * Whether tasks run on virtual threads, which requires Java 21 or later.
+	 */
+	public static boolean areVirtualThreadsAvailable() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * Create an executor that runs each task on its own virtual thread, or on one of the given number of platform threads if virtual threads are not available.
+	 */
+	public static ExecutorService newExecutor(int platformThreadCount) {
+		if(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+			try {
+				return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				System.err.println("Virtual threads could not be created, so platform threads are used instead: " + e);
+			}
+		}
+		return Executors.newFixedThreadPool(platformThreadCount);
+	}
+
+	/**
+	 * Run the given tasks at the same time and wait for all of them, as a single unit of work.
+	 *
+	 * The tasks are awaited in the order in which they complete, so as soon as one task fails, the remaining tasks are cancelled.
+	 * Its exception is only thrown once all tasks have stopped, so none of them still writes to an output that the caller removes after the failure.
+	 *
+	 * @return the result of each task, in the order of the tasks.
+	 */
+	public static <T> List<T> invokeAll(List<IoTask<T>> tasks, int platformThreadCount) throws IOException {
+		ExecutorService executor = newExecutor(platformThreadCount);
+		CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+		List<Future<T>> futures = new ArrayList<>();
+		try {
+			for(IoTask<T> task : tasks) {
+				futures.add(completionService.submit(task::call));
+			}
+			for(int i = 0; i < futures.size(); i++) {
+				completionService.take().get();
+			}
+			List<T> results = new ArrayList<>();
+			for(Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if(cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Waiting for the I/O tasks was interrupted", e);
+		} finally {
+			shutdownAndWait(executor);
+		}
+	}
+
+	/**
+	 * Cancel the tasks that are still running or waiting and wait until all of them have stopped.
+	 *
+	 * A task that does not respond to the interruption is still waited for, since it may be writing an output.
+	 */
+	private static void shutdownAndWait(ExecutorService executor) {
+		executor.shutdownNow();
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					break;
+				}
+				System.err.println("Still waiting for cancelled I/O tasks to stop");
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Method findVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			// On Java 19 and 20, virtual threads are a preview feature that can not be used without enabling it
+			((ExecutorService) method.invoke(null)).shutdown();
+			return method;
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A task that mostly waits on file I/O.
+	 */
+	@FunctionalInterface
+	public interface IoTask<T> {
+		T call() throws IOException;
+	}
+}
@@ -0,0 +1,31 @@
+package com.github.arucard21.pipeline;
+
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+
+/**
+ * Commits the telemetry of each stage as a custom JFR event, named com.github.arucard21.pipeline.Stage.
+ *
+ * The events are only recorded while a flight recording is running, e.g. when the JVM is started with -XX:StartFlightRecording.
+ * They are committed when a stage has finished, so the wall time of the stage is a field of the event instead of its duration.
+ */
+public class JfrTelemetrySink implements TelemetrySink {
+	@Override
+	public void record(StageTelemetry telemetry) {
+		StageEvent event = new StageEvent();
+		if(!event.isEnabled()) {
+			return;
+		}
+		event.pipeline = telemetry.getPipeline();
+		event.stage = telemetry.getStage();
+		event.output = telemetry.getOutput();
+		event.reused = telemetry.isReused();
+		event.wallTime = telemetry.getWallTimeNanos();
+		event.cpuTime = telemetry.getCpuTimeNanos();
+		event.gcTime = telemetry.getGcTimeMillis();
+		event.bytesRead = telemetry.getBytesRead();
+		event.bytesWritten = telemetry.getBytesWritten();
+		event.items = telemetry.getItems();
+		event.peakHeap = telemetry.getPeakHeapBytes();
+		event.commit();
+	}
+}
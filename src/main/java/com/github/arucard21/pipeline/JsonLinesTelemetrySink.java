@@ -0,0 +1,46 @@
+package com.github.arucard21.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+import com.google.gson.Gson;
+
+/**
+ * Appends the telemetry of each stage as a single line of JSON to a file.
+ *
+ * Each line is flushed once it is written, so the file can be followed while the pipeline is running.
+ */
+public class JsonLinesTelemetrySink implements TelemetrySink, Closeable {
+	private final Writer writer;
+	private final Gson gson = new Gson();
+
+	public JsonLinesTelemetrySink(Path telemetryPath) throws IOException {
+		if(telemetryPath.getParent() != null) {
+			Files.createDirectories(telemetryPath.getParent());
+		}
+		this.writer = Files.newBufferedWriter(telemetryPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public synchronized void record(StageTelemetry telemetry) {
+		try {
+			writer.write(gson.toJson(telemetry));
+			writer.write('\n');
+			writer.flush();
+		} catch (IOException e) {
+			System.err.print("Writing the telemetry of stage " + telemetry.getStage() + " failed with exception: ");
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,12 @@
+package com.github.arucard21.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The computation of a stage, which writes its outputs into the given directory.
+ */
+@FunctionalInterface
+public interface StageAction {
+	void run(Path targetDirectory) throws IOException, InterruptedException;
+}
@@ -0,0 +1,61 @@
+package com.github.arucard21.pipeline;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event for the telemetry of a single stage, see JfrTelemetrySink.
+ */
+@Name("com.github.arucard21.pipeline.Stage")
+@Label("Pipeline Stage")
+@Category({"Domain Similarity", "Pipeline"})
+@Description("The resources used by a stage of generating dataset domain terms or of dataset discovery")
+@StackTrace(false)
+public class StageEvent extends Event {
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("Stage")
+	String stage;
+
+	@Label("Output")
+	String output;
+
+	@Label("Reused")
+	@Description("Whether the output already existed, so the stage was not run")
+	boolean reused;
+
+	@Label("Wall Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long wallTime;
+
+	@Label("CPU Time")
+	@Description("The CPU time of the whole process while the stage ran")
+	@Timespan(Timespan.NANOSECONDS)
+	long cpuTime;
+
+	@Label("GC Time")
+	@Timespan(Timespan.MILLISECONDS)
+	long gcTime;
+
+	@Label("Bytes Read")
+	@DataAmount(DataAmount.BYTES)
+	long bytesRead;
+
+	@Label("Bytes Written")
+	@DataAmount(DataAmount.BYTES)
+	long bytesWritten;
+
+	@Label("Items")
+	long items;
+
+	@Label("Peak Heap")
+	@DataAmount(DataAmount.BYTES)
+	long peakHeap;
+}
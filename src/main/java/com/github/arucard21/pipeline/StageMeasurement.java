@@ -0,0 +1,119 @@
+package com.github.arucard21.pipeline;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+
+/**
+ * Measures the resources that a single run of a stage uses, from its start until it has finished.
+ *
+ * The CPU time and GC time are those of the whole process, since D4 runs each stage on its own threads.
+ * When stages run concurrently, these and the peak heap usage are shared between them, so they are an upper bound for each of them.
+ *
+ * A measurement must be closed, also when its stage fails, since the peak heap usage is only reset once no stage is measured anymore.
+ */
+public class StageMeasurement implements AutoCloseable {
+	/**
+	 * The number of stages that are being measured, since the peak heap usage can only be reset when none of them are.
+	 */
+	private static final AtomicInteger runningMeasurements = new AtomicInteger();
+
+	private final String pipeline;
+	private final String stage;
+	private final Path output;
+	private final long startTime;
+	private final long startNanos;
+	private final long startCpuTime;
+	private final long startGcTime;
+	private final AtomicBoolean stopped = new AtomicBoolean();
+
+	private StageMeasurement(String pipeline, String stage, Path output) {
+		this.pipeline = pipeline;
+		this.stage = stage;
+		this.output = output;
+		this.startTime = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+		this.startCpuTime = getProcessCpuTime();
+		this.startGcTime = getGcTime();
+	}
+
+	public static StageMeasurement start(String pipeline, String stage, Path output) {
+		if(runningMeasurements.getAndIncrement() == 0) {
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if(pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+				}
+			}
+		}
+		return new StageMeasurement(pipeline, stage, output);
+	}
+
+	/**
+	 * Finish this measurement.
+	 *
+	 * @param reused whether the output already existed, so the stage was not run.
+	 * @param items the number of items the stage produced, or -1 if it does not count them.
+	 */
+	public StageTelemetry finish(boolean reused, long bytesRead, long bytesWritten, long items) {
+		long wallTime = System.nanoTime() - startNanos;
+		long cpuTime = getProcessCpuTime();
+		long gcTime = getGcTime() - startGcTime;
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		stop();
+		return new StageTelemetry(
+				pipeline,
+				stage,
+				output == null ? null : output.toString(),
+				reused,
+				startTime,
+				wallTime,
+				cpuTime < 0 || startCpuTime < 0 ? -1 : cpuTime - startCpuTime,
+				gcTime,
+				bytesRead,
+				bytesWritten,
+				items,
+				peakHeap);
+	}
+
+	/**
+	 * Stop this measurement without recording it, e.g. because its stage failed. This does nothing if it has already finished.
+	 */
+	@Override
+	public void close() {
+		stop();
+	}
+
+	private void stop() {
+		if(stopped.compareAndSet(false, true)) {
+			runningMeasurements.decrementAndGet();
+		}
+	}
+
+	private static long getProcessCpuTime() {
+		OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+		if(operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	private static long getGcTime() {
+		long gcTime = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTime += Math.max(0, collector.getCollectionTime());
+		}
+		return gcTime;
+	}
+}
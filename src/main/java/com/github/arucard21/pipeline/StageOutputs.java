@@ -0,0 +1,389 @@
+package com.github.arucard21.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+
+import com.github.arucard21.pipeline.objects.StageManifest;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Writes the outputs of pipeline stages atomically and records a manifest for each of them.
+ *
+ * A stage writes its outputs into a partial directory next to the final location. Once the stage has completed,
+ * the outputs are synced to disk and moved into place, after which a manifest with their size, checksum and
+ * the parameters of the stage is written next to each output. An output that does not match its manifest is
+ * removed, so the stage is run again instead of its partial output being used.
+ *
+ * While a stage runs, its partial directory is locked through a lock file next to it, which also records the process that owns it.
+ * Partial directories that are not locked were left behind by an earlier run and are removed, but those of concurrent writers are kept.
+ */
+public class StageOutputs {
+	public static final String MANIFEST_SUFFIX = ".manifest.json";
+	public static final String PARTIAL_PREFIX = ".partial-";
+	public static final String LOCK_SUFFIX = ".lock";
+
+	private StageOutputs() {}
+
+	/**
+	 * Check whether all outputs of a stage are complete and were created with the same parameters.
+	 *
+	 * Outputs that were created before manifests were recorded are trusted if they are not empty and their gzipped and JSON files can be read,
+	 * and a manifest is recorded for them. If any of the outputs is incomplete or outdated, all outputs of the stage are removed.
+	 */
+	public static boolean areComplete(Path outputDirectory, List<String> outputNames, String stageName, String parameters) throws IOException {
+		boolean complete = true;
+		for(String outputName : outputNames) {
+			complete &= isComplete(outputDirectory.resolve(outputName), stageName, parameters);
+		}
+		if(!complete) {
+			for(String outputName : outputNames) {
+				delete(outputDirectory.resolve(outputName));
+			}
+		}
+		return complete;
+	}
+
+	/**
+	 * Check whether the output of a stage is complete and was created with the same parameters.
+	 *
+	 * @see #areComplete(Path, List, String, String)
+	 */
+	public static boolean isComplete(Path output, String stageName, String parameters) throws IOException {
+		if(!Files.exists(output)) {
+			Files.deleteIfExists(getManifestPath(output));
+			return false;
+		}
+		StageManifest manifest = readManifest(output);
+		if(manifest == null) {
+			if(!isReadable(output)) {
+				System.out.println(output.toString() + " already exists without a manifest, but it is empty or can not be read. Redoing this step.");
+				delete(output);
+				return false;
+			}
+			System.out.println(output.toString() + " already exists without a manifest. Trusting it and recording its manifest.");
+			writeManifest(output, stageName, parameters);
+			return true;
+		}
+		String problem = null;
+		if(!parameters.equals(manifest.getParameters())) {
+			problem = "was created with different parameters or inputs";
+		}
+		else {
+			StageManifest current = measure(output, stageName, parameters, false);
+			if(current.getSize() != manifest.getSize() || current.getFileCount() != manifest.getFileCount()) {
+				problem = "does not have the size recorded in its manifest";
+			}
+			else if(current.getLastModified() != manifest.getLastModified() && !checksum(output).equals(manifest.getChecksum())) {
+				problem = "does not have the checksum recorded in its manifest";
+			}
+		}
+		if(problem != null) {
+			System.out.println(String.format("%s %s. Redoing this step.", output.toString(), problem));
+			delete(output);
+			return false;
+		}
+		System.out.println(output.toString() + " already exists. Skipping this step.");
+		return true;
+	}
+
+	/**
+	 * Run a stage in a partial directory and atomically move each of its outputs into the output directory.
+	 *
+	 * @param outputNames the names of the files or directories that the stage writes into the directory it is given.
+	 */
+	public static void write(Path outputDirectory, List<String> outputNames, String stageName, String parameters, StageAction action) throws IOException, InterruptedException {
+		Files.createDirectories(outputDirectory);
+		removePartialOutputs(outputDirectory, stageName);
+		Path partialDirectory = outputDirectory.resolve(PARTIAL_PREFIX + stageName + "-" + UUID.randomUUID());
+		Path lockPath = getLockPath(partialDirectory);
+		// The lock is taken before the partial directory is created, so a partial directory without a lock file is never in use
+		try(FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+			FileLock lock = lockChannel.lock();
+			try {
+				lockChannel.write(StandardCharsets.UTF_8.encode(String.valueOf(ProcessHandle.current().pid())));
+				runInPartialDirectory(outputDirectory, partialDirectory, outputNames, stageName, parameters, action);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			Files.deleteIfExists(lockPath);
+		}
+	}
+
+	private static void runInPartialDirectory(Path outputDirectory, Path partialDirectory, List<String> outputNames, String stageName, String parameters, StageAction action) throws IOException, InterruptedException {
+		Files.createDirectories(partialDirectory);
+		try {
+			action.run(partialDirectory);
+			sync(partialDirectory);
+			for(String outputName : outputNames) {
+				Path output = outputDirectory.resolve(outputName);
+				delete(output);
+				Files.move(partialDirectory.resolve(outputName), output, StandardCopyOption.ATOMIC_MOVE);
+			}
+			syncDirectory(outputDirectory);
+			for(String outputName : outputNames) {
+				writeManifest(outputDirectory.resolve(outputName), stageName, parameters);
+			}
+		} finally {
+			delete(partialDirectory);
+		}
+	}
+
+	/**
+	 * Atomically write a single output of a stage, which is written by code that can not be interrupted.
+	 */
+	public static void writeOutput(Path output, String stageName, String parameters, OutputWriter writer) throws IOException {
+		String outputName = output.getFileName().toString();
+		try {
+			write(output.getParent(), List.of(outputName), stageName, parameters, targetDirectory -> writer.write(targetDirectory.resolve(outputName)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Writing " + output + " was interrupted", e);
+		}
+	}
+
+	/**
+	 * A fingerprint of an input of a stage, which changes whenever the content of that input changes.
+	 *
+	 * This is the checksum of the input if it was written by a stage. Otherwise it is derived from the name, size and modification time of its files.
+	 */
+	public static String fingerprint(Path input) throws IOException {
+		StageManifest manifest = readManifest(input);
+		if(manifest != null) {
+			return manifest.getChecksum();
+		}
+		try(Stream<Path> files = Files.walk(input, FileVisitOption.FOLLOW_LINKS)){
+			String listing = files
+					.filter(Files::isRegularFile)
+					.sorted()
+					.map(file -> String.format("%s,%d,%d", input.relativize(file), file.toFile().length(), file.toFile().lastModified()))
+					.collect(Collectors.joining("\n"));
+			CRC32C crc = new CRC32C();
+			crc.update(listing.getBytes(StandardCharsets.UTF_8));
+			return Long.toHexString(crc.getValue());
+		}
+	}
+
+	/**
+	 * A fingerprint of an input of a stage that only depends on the names and content of its files.
+	 *
+	 * This is more expensive than fingerprint(Path), but does not change when files are only touched or copied.
+	 */
+	public static String contentFingerprint(Path input) throws IOException {
+		return checksum(input);
+	}
+
+	/**
+	 * The total size of the files in the given file or directory, or 0 if it does not exist.
+	 */
+	public static long size(Path path) throws IOException {
+		if(!Files.exists(path)) {
+			return 0;
+		}
+		return measure(path, null, null, false).getSize();
+	}
+
+	public static StageManifest readManifest(Path output) throws IOException {
+		Path manifestPath = getManifestPath(output);
+		if(!Files.exists(manifestPath)) {
+			return null;
+		}
+		try(Reader reader = Files.newBufferedReader(manifestPath)){
+			return new Gson().fromJson(reader, StageManifest.class);
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	public static StageManifest writeManifest(Path output, String stageName, String parameters) throws IOException {
+		StageManifest manifest = measure(output, stageName, parameters, true);
+		Path manifestPath = getManifestPath(output);
+		Path partialManifestPath = manifestPath.resolveSibling(PARTIAL_PREFIX + manifestPath.getFileName());
+		try(Writer writer = Files.newBufferedWriter(partialManifestPath)){
+			new GsonBuilder().setPrettyPrinting().create().toJson(manifest, writer);
+		}
+		Files.move(partialManifestPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return manifest;
+	}
+
+	public static Path getManifestPath(Path output) {
+		return output.resolveSibling(output.getFileName() + MANIFEST_SUFFIX);
+	}
+
+	/**
+	 * Remove an output and its manifest.
+	 *
+	 * If the output is a link, only the link is removed.
+	 */
+	public static void delete(Path output) throws IOException {
+		if(Files.exists(output, java.nio.file.LinkOption.NOFOLLOW_LINKS)) {
+			try(Stream<Path> paths = Files.walk(output)){
+				for(Path toDelete : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(toDelete);
+				}
+			}
+		}
+		Files.deleteIfExists(getManifestPath(output));
+	}
+
+	/**
+	 * Flush all files in the given file or directory to disk.
+	 */
+	public static void sync(Path path) throws IOException {
+		try(Stream<Path> files = Files.walk(path, FileVisitOption.FOLLOW_LINKS)){
+			for(Path file : (Iterable<Path>) files::iterator) {
+				if(Files.isRegularFile(file)) {
+					try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+						channel.force(true);
+					}
+				}
+				else {
+					syncDirectory(file);
+				}
+			}
+		}
+	}
+
+	private static void syncDirectory(Path directory) {
+		try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+			channel.force(true);
+		} catch (IOException e) {
+			// Not every platform allows syncing a directory, the rename is still atomic without it
+		}
+	}
+
+	public static Path getLockPath(Path partialDirectory) {
+		return partialDirectory.resolveSibling(partialDirectory.getFileName() + LOCK_SUFFIX);
+	}
+
+	/**
+	 * Remove the partial directories of the given stage that were left behind by an earlier run, but not those that are still being written.
+	 */
+	private static void removePartialOutputs(Path outputDirectory, String stageName) throws IOException {
+		List<Path> partialOutputs;
+		try(DirectoryStream<Path> paths = Files.newDirectoryStream(outputDirectory, PARTIAL_PREFIX + stageName + "-*")){
+			partialOutputs = new ArrayList<>();
+			paths.forEach(partialOutputs::add);
+		}
+		for(Path partialOutput : partialOutputs) {
+			if(partialOutput.getFileName().toString().endsWith(LOCK_SUFFIX)) {
+				continue;
+			}
+			Path lockPath = getLockPath(partialOutput);
+			if(!Files.exists(lockPath)) {
+				System.out.println("Removing " + partialOutput.toString() + " which was left behind by an earlier run.");
+				delete(partialOutput);
+				continue;
+			}
+			try(FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.WRITE);
+					FileLock lock = lockChannel.tryLock()){
+				if(lock == null) {
+					continue;
+				}
+				System.out.println("Removing " + partialOutput.toString() + " which was left behind by an earlier run.");
+				delete(partialOutput);
+				Files.deleteIfExists(lockPath);
+			} catch (OverlappingFileLockException | NoSuchFileException e) {
+				// Another stage in this process holds the lock, or it has just finished
+			} catch (IOException e) {
+				// Without a working lock, it can not be known whether the partial directory is still in use, so it is kept
+			}
+		}
+	}
+
+	/**
+	 * Whether the given output is not empty and its gzipped and JSON files can be read completely, which catches most outputs that were cut off.
+	 */
+	private static boolean isReadable(Path output) throws IOException {
+		if(size(output) == 0) {
+			return false;
+		}
+		try(Stream<Path> files = Files.walk(output, FileVisitOption.FOLLOW_LINKS)){
+			for(Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				String fileName = file.getFileName().toString();
+				if(fileName.endsWith(".gz")) {
+					try(InputStream input = new GZIPInputStream(Files.newInputStream(file), 1 << 16)){
+						input.transferTo(OutputStream.nullOutputStream());
+					}
+				}
+				else if(fileName.endsWith(".json")) {
+					try(Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)){
+						JsonParser.parseReader(reader);
+					}
+				}
+			}
+		} catch (IOException | JsonParseException e) {
+			return false;
+		}
+		return true;
+	}
+
+	private static StageManifest measure(Path output, String stageName, String parameters, boolean checksumIncluded) throws IOException {
+		long size = 0;
+		long fileCount = 0;
+		long lastModified = 0;
+		try(Stream<Path> files = Files.walk(output, FileVisitOption.FOLLOW_LINKS)){
+			for(Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				size += Files.size(file);
+				fileCount++;
+				lastModified = Math.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+			}
+		}
+		return new StageManifest(stageName, parameters, size, fileCount, lastModified, checksumIncluded ? checksum(output) : null);
+	}
+
+	/**
+	 * A CRC-32C checksum over the relative path and content of each file in the given file or directory.
+	 */
+	private static String checksum(Path output) throws IOException {
+		CRC32C crc = new CRC32C();
+		byte[] buffer = new byte[1 << 16];
+		try(Stream<Path> files = Files.walk(output, FileVisitOption.FOLLOW_LINKS)){
+			for(Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+				crc.update(output.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+				try(InputStream input = Files.newInputStream(file)){
+					int read;
+					while((read = input.read(buffer)) != -1) {
+						crc.update(buffer, 0, read);
+					}
+				}
+			}
+		}
+		return HexFormat.of().toHexDigits((int) crc.getValue());
+	}
+
+	/**
+	 * Writes a single output, given the path of the file or directory it should write to.
+	 */
+	@FunctionalInterface
+	public interface OutputWriter {
+		void write(Path output) throws IOException;
+	}
+}
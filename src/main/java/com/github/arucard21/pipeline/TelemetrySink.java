@@ -0,0 +1,27 @@
+package com.github.arucard21.pipeline;
+
+import java.util.List;
+
+import com.github.arucard21.pipeline.objects.StageTelemetry;
+
+/**
+ * Receives the telemetry of each stage of a pipeline once that stage has finished.
+ *
+ * Input datasets may be processed concurrently, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface TelemetrySink {
+	void record(StageTelemetry telemetry);
+
+	/**
+	 * A sink that passes the telemetry of each stage on to all of the given sinks.
+	 */
+	static TelemetrySink of(TelemetrySink... sinks) {
+		List<TelemetrySink> allSinks = List.of(sinks);
+		return telemetry -> {
+			for(TelemetrySink sink : allSinks) {
+				sink.record(telemetry);
+			}
+		};
+	}
+}
@@ -0,0 +1,38 @@
+package com.github.arucard21.pipeline.objects;
+
+public class StageManifest {
+	private String stage;
+	private String parameters;
+	private long size;
+	private long fileCount;
+	private long lastModified;
+	private String checksum;
+
+	public StageManifest(String stage, String parameters, long size, long fileCount, long lastModified, String checksum) {
+		this.stage = stage;
+		this.parameters = parameters;
+		this.size = size;
+		this.fileCount = fileCount;
+		this.lastModified = lastModified;
+		this.checksum = checksum;
+	}
+
+	public String getStage() {
+		return stage;
+	}
+	public String getParameters() {
+		return parameters;
+	}
+	public long getSize() {
+		return size;
+	}
+	public long getFileCount() {
+		return fileCount;
+	}
+	public long getLastModified() {
+		return lastModified;
+	}
+	public String getChecksum() {
+		return checksum;
+	}
+}
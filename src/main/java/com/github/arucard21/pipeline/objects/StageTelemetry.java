@@ -0,0 +1,83 @@
+package com.github.arucard21.pipeline.objects;
+
+public class StageTelemetry {
+	private String pipeline;
+	private String stage;
+	private String output;
+	private boolean reused;
+	private long startTime;
+	private long wallTimeNanos;
+	private long cpuTimeNanos;
+	private long gcTimeMillis;
+	private long bytesRead;
+	private long bytesWritten;
+	private long items;
+	private long peakHeapBytes;
+
+	public StageTelemetry(String pipeline, String stage, String output, boolean reused, long startTime, long wallTimeNanos, long cpuTimeNanos, long gcTimeMillis, long bytesRead, long bytesWritten, long items, long peakHeapBytes) {
+		this.pipeline = pipeline;
+		this.stage = stage;
+		this.output = output;
+		this.reused = reused;
+		this.startTime = startTime;
+		this.wallTimeNanos = wallTimeNanos;
+		this.cpuTimeNanos = cpuTimeNanos;
+		this.gcTimeMillis = gcTimeMillis;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.items = items;
+		this.peakHeapBytes = peakHeapBytes;
+	}
+
+	public String getPipeline() {
+		return pipeline;
+	}
+	public String getStage() {
+		return stage;
+	}
+	/**
+	 * The path of the output of the stage, which identifies the dataset that the stage was run for.
+	 */
+	public String getOutput() {
+		return output;
+	}
+	/**
+	 * Whether the output of the stage already existed, in which case the stage only checked that output.
+	 */
+	public boolean isReused() {
+		return reused;
+	}
+	/**
+	 * The time at which the stage started, in milliseconds since the epoch.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+	/**
+	 * The CPU time of the whole process while the stage ran, or -1 if the JVM does not provide it.
+	 */
+	public long getCpuTimeNanos() {
+		return cpuTimeNanos;
+	}
+	public long getGcTimeMillis() {
+		return gcTimeMillis;
+	}
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	/**
+	 * The number of items the stage produced, such as files, terms or datasets, or -1 if the stage does not count them.
+	 */
+	public long getItems() {
+		return items;
+	}
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+}
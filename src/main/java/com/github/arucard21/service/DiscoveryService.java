@@ -0,0 +1,313 @@
+package com.github.arucard21.service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import com.github.arucard21.dataset_discovery.DatasetDiscovery;
+import com.github.arucard21.dataset_discovery.objects.DatasetSimilarity;
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.service.objects.DatasetRegistration;
+import com.github.arucard21.service.objects.DatasetStatus;
+import com.github.arucard21.service.objects.DiscoveryResult;
+import com.github.arucard21.service.objects.DomainRegistration;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running dataset discovery service with a local HTTP API that returns JSON.
+ *
+ * The dataset domain terms of each registered domain and the matching result of each registered input dataset are
+ * kept in memory, so queries do not need to read any files. Input datasets are indexed and matched against all domains
+ * in the background, while the results for the datasets that were already matched can still be queried.
+ *
+ * The registered domains and datasets are not stored, so they need to be registered again after a restart. The term index and
+ * matching results in the output directory are then reused for each dataset that is registered again, as long as neither the dataset
+ * nor the dataset domain terms have changed, so only reading those results needs to be repeated.
+ *
+ * The API consists of:
+ * <ul>
+ * <li>GET /domains and POST /domains with {"name": ..., "path": ...} to register the dataset domain terms of a domain</li>
+ * <li>GET /datasets and POST /datasets with {"path": ...} to register an input dataset for background indexing</li>
+ * <li>GET /similarity?domain=... for the matching result of each matched input dataset</li>
+ * <li>GET /discover?domain=... for the input datasets that are focused on that domain</li>
+ * </ul>
+ */
+public class DiscoveryService {
+	public static final String STATUS_PENDING = "pending";
+	public static final String STATUS_INDEXING = "indexing";
+	public static final String STATUS_INDEXED = "indexed";
+	public static final String STATUS_FAILED = "failed";
+
+	private final Path outputDirectory;
+	private final Map<String, Path> domainDirectories = new ConcurrentHashMap<>();
+	/**
+	 * Matches the input datasets against all domains, so the dataset domain terms of each domain are loaded and cached only once.
+	 */
+	private volatile DatasetDiscovery matcher;
+	/**
+	 * The matching result of each matched input dataset, mapped by the name of that dataset, for each domain.
+	 */
+	private final Map<String, Map<String, MatchingResult>> matchingResults = new ConcurrentHashMap<>();
+	private final Map<String, DatasetStatus> datasets = new ConcurrentHashMap<>();
+	/**
+	 * Indexes the input datasets one at a time, since D4 already uses multiple threads for each dataset.
+	 */
+	private final ExecutorService indexer = Executors.newSingleThreadExecutor();
+	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private HttpServer server;
+
+	public DiscoveryService(Path outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * Run the service until the JVM is stopped.
+	 *
+	 * The arguments are the port, the output directory and optionally any number of domains as name=path,
+	 * where the path is the directory containing the dataset domain terms for that domain.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: DiscoveryService <port> <output directory> [<domain name>=<dataset domain terms directory>]...");
+			System.exit(1);
+		}
+		DiscoveryService service = new DiscoveryService(Paths.get(args[1]));
+		for(int i = 2; i < args.length; i++) {
+			String[] domain = args[i].split("=", 2);
+			if(domain.length != 2) {
+				throw new IllegalArgumentException("A domain must be provided as name=path, but was " + args[i]);
+			}
+			service.registerDomain(domain[0], Paths.get(domain[1]));
+		}
+		service.start(Integer.parseInt(args[0]));
+		Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+	}
+
+	/**
+	 * Start serving the API on the loopback address with the given port.
+	 */
+	public void start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/domains", exchange -> handle(exchange, this::handleDomains));
+		server.createContext("/datasets", exchange -> handle(exchange, this::handleDatasets));
+		server.createContext("/similarity", exchange -> handle(exchange, this::handleSimilarity));
+		server.createContext("/discover", exchange -> handle(exchange, this::handleDiscover));
+		server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		server.start();
+		System.out.println(String.format("Dataset discovery service is listening on %s", server.getAddress()));
+	}
+
+	public void stop() {
+		if(server != null) {
+			server.stop(1);
+		}
+		indexer.shutdownNow();
+	}
+
+	/**
+	 * Register the dataset domain terms of a domain and match all registered input datasets against it in the background.
+	 */
+	public synchronized void registerDomain(String name, Path datasetDomainTermsDirectory) {
+		if(!datasetDomainTermsDirectory.toFile().exists()) {
+			throw new IllegalArgumentException(String.format("The dataset domain terms %s do not exist.", datasetDomainTermsDirectory.toString()));
+		}
+		if(matcher == null) {
+			matcher = new DatasetDiscovery(datasetDomainTermsDirectory, outputDirectory, List.of());
+		}
+		matchingResults.put(name, new ConcurrentHashMap<>());
+		domainDirectories.put(name, datasetDomainTermsDirectory);
+		for(DatasetStatus dataset : datasets.values()) {
+			if(!STATUS_FAILED.equals(dataset.getStatus())) {
+				dataset.setStatus(STATUS_PENDING);
+				indexer.submit(() -> indexDataset(dataset));
+			}
+		}
+	}
+
+	/**
+	 * Register an input dataset, which is indexed and matched against all registered domains in the background.
+	 *
+	 * Registering a dataset again matches it again, which only does work if the dataset has changed.
+	 */
+	public DatasetStatus registerDataset(Path inputDataset) {
+		if(!inputDataset.toFile().exists()) {
+			throw new IllegalArgumentException(String.format("The input dataset %s does not exist.", inputDataset.toString()));
+		}
+		DatasetStatus dataset = new DatasetStatus(inputDataset.getFileName().toString(), inputDataset.toString(), STATUS_PENDING);
+		datasets.put(dataset.getName(), dataset);
+		indexer.submit(() -> indexDataset(dataset));
+		return dataset;
+	}
+
+	/**
+	 * Match an input dataset against all registered domains, while reading its term index only once.
+	 */
+	private void indexDataset(DatasetStatus dataset) {
+		Map<Path, String> domainNames = new TreeMap<>();
+		domainDirectories.forEach((name, directory) -> domainNames.put(directory, name));
+		if(domainNames.isEmpty()) {
+			// It is matched once a domain is registered
+			return;
+		}
+		dataset.setStatus(STATUS_INDEXING);
+		try {
+			Map<Path, MatchingResult> datasetResults = matcher.calculateSimilarityToDomainRepresentations(Paths.get(dataset.getPath()), new ArrayList<>(domainNames.keySet()));
+			datasetResults.forEach((directory, matchingResult) -> matchingResults.get(domainNames.get(directory)).put(dataset.getName(), matchingResult));
+			dataset.setError(null);
+			dataset.setStatus(STATUS_INDEXED);
+		} catch (IOException | RuntimeException e) {
+			System.err.println(String.format("Indexing dataset %s failed with exception: ", dataset.getName()));
+			e.printStackTrace();
+			dataset.setError(e.toString());
+			dataset.setStatus(STATUS_FAILED);
+		}
+	}
+
+	private Object handleDomains(HttpExchange exchange) throws IOException {
+		if("POST".equals(exchange.getRequestMethod())) {
+			DomainRegistration registration = readBody(exchange, DomainRegistration.class);
+			if(registration.getName() == null || registration.getPath() == null) {
+				throw new IllegalArgumentException("A domain needs a name and a path");
+			}
+			registerDomain(registration.getName(), Paths.get(registration.getPath()));
+			return registration;
+		}
+		requireGet(exchange);
+		return new TreeMap<>(domainDirectories).entrySet().stream()
+				.map(domain -> new DomainRegistration(domain.getKey(), domain.getValue().toString()))
+				.collect(Collectors.toList());
+	}
+
+	private Object handleDatasets(HttpExchange exchange) throws IOException {
+		if("POST".equals(exchange.getRequestMethod())) {
+			DatasetRegistration registration = readBody(exchange, DatasetRegistration.class);
+			if(registration.getPath() == null) {
+				throw new IllegalArgumentException("A dataset needs a path");
+			}
+			return registerDataset(Paths.get(registration.getPath()));
+		}
+		requireGet(exchange);
+		return new TreeMap<>(datasets).values();
+	}
+
+	private Object handleSimilarity(HttpExchange exchange) {
+		requireGet(exchange);
+		return new TreeMap<>(getMatchingResults(exchange));
+	}
+
+	private Object handleDiscover(HttpExchange exchange) {
+		requireGet(exchange);
+		String domain = getDomainParameter(exchange);
+		Map<String, MatchingResult> domainResults = getMatchingResults(exchange);
+		List<DatasetSimilarity> similarityScores = domainResults.entrySet().stream()
+				.map(result -> new DatasetSimilarity(result.getKey(), result.getValue().getSimilarityScore()))
+				.collect(Collectors.toList());
+		Set<String> datasetsFocusedOnDomain = similarityScores.isEmpty() ? Set.of() : DatasetDiscovery.selectSimilarDatasets(similarityScores).stream()
+				.map(DatasetSimilarity::getDatasetName)
+				.collect(Collectors.toCollection(TreeSet::new));
+		int pendingDatasets = (int) datasets.values().stream()
+				.filter(dataset -> STATUS_PENDING.equals(dataset.getStatus()) || STATUS_INDEXING.equals(dataset.getStatus()))
+				.count();
+		return new DiscoveryResult(domain, datasetsFocusedOnDomain, similarityScores.size(), pendingDatasets);
+	}
+
+	private Map<String, MatchingResult> getMatchingResults(HttpExchange exchange) {
+		String domain = getDomainParameter(exchange);
+		Map<String, MatchingResult> domainResults = matchingResults.get(domain);
+		if(domainResults == null) {
+			throw new NoSuchElementException("Unknown domain: " + domain);
+		}
+		return domainResults;
+	}
+
+	private static String getDomainParameter(HttpExchange exchange) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if(query != null) {
+			for(String parameter : query.split("&")) {
+				String[] keyValue = parameter.split("=", 2);
+				if(keyValue.length == 2 && "domain".equals(keyValue[0])) {
+					return URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
+				}
+			}
+		}
+		throw new IllegalArgumentException("The domain query parameter is required");
+	}
+
+	private static void requireGet(HttpExchange exchange) {
+		if(!"GET".equals(exchange.getRequestMethod())) {
+			throw new UnsupportedOperationException("Method not allowed: " + exchange.getRequestMethod());
+		}
+	}
+
+	private <T> T readBody(HttpExchange exchange, Class<T> type) throws IOException {
+		try(Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)){
+			T body = gson.fromJson(reader, type);
+			if(body == null) {
+				throw new IllegalArgumentException("The request body is empty");
+			}
+			return body;
+		} catch (JsonParseException e) {
+			throw new IllegalArgumentException("The request body is not valid JSON: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Run the handler and send its result as JSON, or send the error with a matching status code.
+	 */
+	private void handle(HttpExchange exchange, RequestHandler handler) throws IOException {
+		int status = 200;
+		Object response;
+		try {
+			response = handler.handle(exchange);
+			if("POST".equals(exchange.getRequestMethod())) {
+				status = 202;
+			}
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			response = Map.of("error", e.getMessage());
+		} catch (NoSuchElementException e) {
+			status = 404;
+			response = Map.of("error", e.getMessage());
+		} catch (UnsupportedOperationException e) {
+			status = 405;
+			response = Map.of("error", e.getMessage());
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			status = 500;
+			response = Map.of("error", e.toString());
+		}
+		byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream output = exchange.getResponseBody()){
+			output.write(body);
+		}
+	}
+
+	@FunctionalInterface
+	private interface RequestHandler {
+		Object handle(HttpExchange exchange) throws IOException;
+	}
+}
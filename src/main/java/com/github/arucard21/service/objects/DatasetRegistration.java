@@ -0,0 +1,13 @@
+package com.github.arucard21.service.objects;
+
+public class DatasetRegistration {
+	private String path;
+
+	public DatasetRegistration(String path) {
+		this.path = path;
+	}
+
+	public String getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,33 @@
+package com.github.arucard21.service.objects;
+
+public class DatasetStatus {
+	private final String name;
+	private final String path;
+	private volatile String status;
+	private volatile String error;
+
+	public DatasetStatus(String name, String path, String status) {
+		this.name = name;
+		this.path = path;
+		this.status = status;
+	}
+
+	public String getName() {
+		return name;
+	}
+	public String getPath() {
+		return path;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	public String getError() {
+		return error;
+	}
+	public void setError(String error) {
+		this.error = error;
+	}
+}
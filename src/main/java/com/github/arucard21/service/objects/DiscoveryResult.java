@@ -0,0 +1,30 @@
+package com.github.arucard21.service.objects;
+
+import java.util.Set;
+
+public class DiscoveryResult {
+	private final String domain;
+	private final Set<String> datasetsFocusedOnDomain;
+	private final int matchedDatasets;
+	private final int pendingDatasets;
+
+	public DiscoveryResult(String domain, Set<String> datasetsFocusedOnDomain, int matchedDatasets, int pendingDatasets) {
+		this.domain = domain;
+		this.datasetsFocusedOnDomain = datasetsFocusedOnDomain;
+		this.matchedDatasets = matchedDatasets;
+		this.pendingDatasets = pendingDatasets;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+	public Set<String> getDatasetsFocusedOnDomain() {
+		return datasetsFocusedOnDomain;
+	}
+	public int getMatchedDatasets() {
+		return matchedDatasets;
+	}
+	public int getPendingDatasets() {
+		return pendingDatasets;
+	}
+}
@@ -0,0 +1,18 @@
+package com.github.arucard21.service.objects;
+
+public class DomainRegistration {
+	private String name;
+	private String path;
+
+	public DomainRegistration(String name, String path) {
+		this.name = name;
+		this.path = path;
+	}
+
+	public String getName() {
+		return name;
+	}
+	public String getPath() {
+		return path;
+	}
+}
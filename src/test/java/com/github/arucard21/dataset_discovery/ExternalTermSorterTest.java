@@ -0,0 +1,125 @@
+package com.github.arucard21.dataset_discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+
+class ExternalTermSorterTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void sortsInMemoryWithinTheBudget() throws IOException {
+		List<String> terms = List.of("b", "a", "é", "b", "", "z");
+		List<String> sorted = sort(terms, 1024 * 1024);
+		// Sorted by their UTF-8 bytes, so "é" (0xC3 0xA9) comes after "z"
+		assertEquals(List.of("", "a", "b", "z", "é"), sorted);
+	}
+
+	@Test
+	public void mergesRunsOnDiskInSeveralPasses() throws IOException {
+		Random random = new Random(42);
+		List<String> terms = new ArrayList<>();
+		for(int i = 0; i < 20000; i++) {
+			terms.add("TERM " + random.nextInt(5000));
+		}
+		// Far below the size of the terms, so they are spilled into many runs that are merged two at a time
+		List<String> sorted = sort(terms, 4096);
+
+		List<String> expected = terms.stream()
+				.map(term -> term.getBytes(StandardCharsets.UTF_8))
+				.sorted(Arrays::compareUnsigned)
+				.map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+				.distinct()
+				.collect(Collectors.toList());
+		assertEquals(expected, sorted);
+		try(Stream<Path> files = Files.list(directory)){
+			assertEquals(List.of(directory.resolve("sorted")), files.collect(Collectors.toList()), "The runs were not deleted");
+		}
+	}
+
+	@Test
+	public void mergeJoinCountsTheTermsInBothFiles() throws IOException {
+		Path datasetTerms = directory.resolve("dataset");
+		Path domainTerms = directory.resolve("domain");
+		writeSorted(List.of("a", "c", "d", "f", "g"), datasetTerms);
+		writeSorted(List.of("b", "c", "f", "h"), domainTerms);
+
+		Set<String> matchedTerms = new TreeSet<>();
+		MatchingResult matchingResult = ExternalTermSorter.mergeJoin(datasetTerms, domainTerms, matchedTerms::add);
+		assertEquals(2, matchingResult.getMatched());
+		assertEquals(5, matchingResult.getDatasetSize());
+		assertEquals(4, matchingResult.getDomainRepresentationSize());
+		assertEquals(Set.of("c", "f"), matchedTerms);
+	}
+
+	@Test
+	public void mergeJoinWithAnEmptyFile() throws IOException {
+		Path datasetTerms = directory.resolve("dataset");
+		Path domainTerms = directory.resolve("domain");
+		writeSorted(List.of(), datasetTerms);
+		writeSorted(List.of("a", "b"), domainTerms);
+
+		MatchingResult matchingResult = ExternalTermSorter.mergeJoin(datasetTerms, domainTerms, null);
+		assertEquals(0, matchingResult.getMatched());
+		assertEquals(0, matchingResult.getDatasetSize());
+		assertEquals(2, matchingResult.getDomainRepresentationSize());
+	}
+
+	private List<String> sort(List<String> terms, long memoryBudget) throws IOException {
+		Path output = directory.resolve("sorted");
+		writeSorted(terms, output, memoryBudget);
+		return readSorted(output);
+	}
+
+	private void writeSorted(List<String> terms, Path output) throws IOException {
+		writeSorted(terms, output, 1024 * 1024);
+	}
+
+	private void writeSorted(List<String> terms, Path output, long memoryBudget) throws IOException {
+		ExternalTermSorter sorter = new ExternalTermSorter(memoryBudget, directory);
+		for(String term : terms) {
+			sorter.add(term);
+		}
+		sorter.sortTo(output);
+	}
+
+	/**
+	 * Read a sorted file, in which each term is stored as its length followed by its UTF-8 bytes.
+	 */
+	private static List<String> readSorted(Path sortedPath) throws IOException {
+		List<String> terms = new ArrayList<>();
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sortedPath)))){
+			while(true) {
+				int length;
+				try {
+					length = input.readInt();
+				} catch (EOFException e) {
+					return terms;
+				}
+				byte[] term = new byte[length];
+				input.readFully(term);
+				terms.add(new String(term, StandardCharsets.UTF_8));
+			}
+		}
+	}
+}
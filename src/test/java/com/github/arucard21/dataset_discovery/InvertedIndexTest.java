@@ -0,0 +1,114 @@
+package com.github.arucard21.dataset_discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.arucard21.dataset_discovery.objects.MatchingResult;
+import com.github.arucard21.dataset_domain_terms.OffHeapDomainTermSet;
+
+class InvertedIndexTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void matchCountsTheDomainTermsOfEachDataset() throws IOException {
+		Random random = new Random(42);
+		Map<String, Set<String>> datasets = new LinkedHashMap<>();
+		Map<String, Path> termIndexPaths = new LinkedHashMap<>();
+		for(int dataset = 0; dataset < 5; dataset++) {
+			Set<String> terms = new HashSet<>();
+			for(int i = 0; i < 20000; i++) {
+				terms.add(term(random.nextInt(50000)));
+			}
+			String name = "dataset-" + dataset;
+			datasets.put(name, terms);
+			termIndexPaths.put(name, writeTermIndex(terms, directory.resolve(name + ".txt.gz")));
+		}
+		// Includes terms that do not occur in any dataset, which only count towards the domain size
+		OffHeapDomainTermSet domainTerms = OffHeapDomainTermSet.create(0);
+		for(int i = 0; i < 10000; i++) {
+			domainTerms.add(term(random.nextInt(60000)));
+		}
+
+		Path indexDirectory = directory.resolve("index");
+		InvertedIndex.build(termIndexPaths, indexDirectory);
+		InvertedIndex index = InvertedIndex.open(indexDirectory);
+		Map<String, MatchingResult> matchingResults = index.match(index.toBitmap(domainTerms), domainTerms.size());
+
+		assertEquals(new ArrayList<>(datasets.keySet()), index.getDatasetNames());
+		Set<String> allTerms = new HashSet<>();
+		datasets.values().forEach(allTerms::addAll);
+		assertEquals(allTerms.size(), index.getTermCount());
+		for(Map.Entry<String, Set<String>> dataset : datasets.entrySet()) {
+			long[] matched = new long[1];
+			domainTerms.forEach(domainTerm -> {
+				if(dataset.getValue().contains(domainTerm)) {
+					matched[0]++;
+				}
+			});
+			MatchingResult matchingResult = matchingResults.get(dataset.getKey());
+			assertEquals(matched[0], matchingResult.getMatched(), dataset.getKey());
+			assertEquals(domainTerms.size(), matchingResult.getDomainRepresentationSize());
+			assertEquals(dataset.getValue().size(), matchingResult.getDatasetSize());
+		}
+	}
+
+	@Test
+	public void datasetWithoutTermsMatchesNothing() throws IOException {
+		Map<String, Path> termIndexPaths = new LinkedHashMap<>();
+		termIndexPaths.put("empty", writeTermIndex(Set.of(), directory.resolve("empty.txt.gz")));
+		termIndexPaths.put("other", writeTermIndex(Set.of("A", "B"), directory.resolve("other.txt.gz")));
+		termIndexPaths.put("unrelated", writeTermIndex(Set.of("X", "Y"), directory.resolve("unrelated.txt.gz")));
+		Path indexDirectory = directory.resolve("index");
+		InvertedIndex.build(termIndexPaths, indexDirectory);
+		InvertedIndex index = InvertedIndex.open(indexDirectory);
+		OffHeapDomainTermSet domainTerms = OffHeapDomainTermSet.create(2);
+		domainTerms.add("A");
+		domainTerms.add("C");
+
+		Map<String, MatchingResult> matchingResults = index.match(index.toBitmap(domainTerms), domainTerms.size());
+		assertEquals(0, matchingResults.get("empty").getMatched());
+		assertEquals(0, matchingResults.get("empty").getDatasetSize());
+		assertEquals(1, matchingResults.get("other").getMatched());
+		assertEquals(2, matchingResults.get("other").getDomainRepresentationSize());
+		// Not in the posting list of any domain term, so its bitmap is not read
+		assertEquals(0, matchingResults.get("unrelated").getMatched());
+		assertEquals(2, matchingResults.get("unrelated").getDatasetSize());
+	}
+
+	private static String term(int index) {
+		return "TERM " + index;
+	}
+
+	/**
+	 * Write a gzipped term index in the tab-separated format of D4 (term identifier, term, column identifiers).
+	 */
+	private static Path writeTermIndex(Set<String> terms, Path termIndexPath) throws IOException {
+		List<String> sortedTerms = new ArrayList<>(terms);
+		sortedTerms.sort(null);
+		try(Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(termIndexPath)), StandardCharsets.UTF_8))){
+			for(int i = 0; i < sortedTerms.size(); i++) {
+				writer.write(String.format("%d\t%s\t%d\n", i, sortedTerms.get(i), i % 10));
+			}
+		}
+		return termIndexPath;
+	}
+}
@@ -0,0 +1,86 @@
+package com.github.arucard21.dataset_discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.arucard21.dataset_discovery.objects.IntersectionEstimate;
+
+class KmvSketchTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void smallSetsHaveAnExactIntersection() {
+		KmvSketch first = sketch(64, 0, 50);
+		KmvSketch second = sketch(64, 30, 40);
+		assertTrue(first.isComplete());
+		assertTrue(second.isComplete());
+
+		IntersectionEstimate estimate = first.estimateIntersection(second, 1.96d);
+		assertTrue(estimate.isExact());
+		assertEquals(20, estimate.getEstimate());
+		assertEquals(20, estimate.getLowerBound());
+		assertEquals(20, estimate.getUpperBound());
+	}
+
+	@Test
+	public void boundsContainTheIntersectionOfLargeSets() {
+		// 25000 of the 100000 terms of each set are in both sets
+		long intersection = 25000;
+		KmvSketch first = sketch(1024, 0, 100000);
+		KmvSketch second = sketch(1024, 100000 - intersection, 100000);
+		assertFalse(first.isComplete());
+		assertEquals(100000, first.getTermCount());
+
+		IntersectionEstimate estimate = first.estimateIntersection(second, 3d);
+		assertFalse(estimate.isExact());
+		assertTrue(estimate.getLowerBound() <= intersection && intersection <= estimate.getUpperBound(),
+				String.format("%d is not within [%d, %d]", intersection, estimate.getLowerBound(), estimate.getUpperBound()));
+		assertTrue(Math.abs(estimate.getEstimate() - intersection) < intersection / 5, "The estimate was " + estimate.getEstimate());
+	}
+
+	@Test
+	public void disjointSetsHaveNoIntersection() {
+		IntersectionEstimate estimate = sketch(256, 0, 10000).estimateIntersection(sketch(256, 10000, 10000), 3d);
+		assertEquals(0, estimate.getLowerBound());
+		assertTrue(estimate.getUpperBound() < 10000 / 10, "The upper bound was " + estimate.getUpperBound());
+	}
+
+	@Test
+	public void readReturnsWrittenSketch() throws IOException {
+		KmvSketch sketch = sketch(128, 0, 1000);
+		Path sketchPath = directory.resolve("terms.kmv");
+		sketch.write(sketchPath);
+
+		KmvSketch read = KmvSketch.read(sketchPath);
+		assertEquals(sketch.getK(), read.getK());
+		assertEquals(sketch.getTermCount(), read.getTermCount());
+		KmvSketch other = sketch(128, 500, 1000);
+		IntersectionEstimate expected = sketch.estimateIntersection(other, 1.96d);
+		IntersectionEstimate estimate = read.estimateIntersection(other, 1.96d);
+		assertEquals(expected.getEstimate(), estimate.getEstimate());
+		assertEquals(expected.getLowerBound(), estimate.getLowerBound());
+		assertEquals(expected.getUpperBound(), estimate.getUpperBound());
+	}
+
+	@Test
+	public void createRejectsEmptySketches() {
+		assertThrows(IllegalArgumentException.class, () -> KmvSketch.create(0));
+	}
+
+	private static KmvSketch sketch(int k, long firstTerm, long termCount) {
+		KmvSketch sketch = KmvSketch.create(k);
+		for(long i = firstTerm; i < firstTerm + termCount; i++) {
+			sketch.add("TERM " + i);
+		}
+		return sketch;
+	}
+}
@@ -0,0 +1,124 @@
+package com.github.arucard21.dataset_discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class TermBitmapTest {
+	/**
+	 * Densities that result in sparse array containers, full bitmap containers and a mix of both.
+	 */
+	private static final double[] DENSITIES = {0.0005d, 0.01d, 0.05d, 0.5d};
+
+	@Test
+	public void andCardinalityMatchesSetIntersection() {
+		Random random = new Random(42);
+		for(double firstDensity : DENSITIES) {
+			for(double secondDensity : DENSITIES) {
+				Set<Integer> first = randomIdentifiers(random, firstDensity);
+				Set<Integer> second = randomIdentifiers(random, secondDensity);
+				Set<Integer> intersection = new TreeSet<>(first);
+				intersection.retainAll(second);
+
+				TermBitmap firstBitmap = toBitmap(first);
+				TermBitmap secondBitmap = toBitmap(second);
+				assertEquals(first.size(), firstBitmap.getCardinality());
+				assertEquals(intersection.size(), firstBitmap.andCardinality(secondBitmap), String.format("densities %s and %s", firstDensity, secondDensity));
+				assertEquals(intersection.size(), secondBitmap.andCardinality(firstBitmap), String.format("densities %s and %s", secondDensity, firstDensity));
+			}
+		}
+	}
+
+	@Test
+	public void ofIgnoresOrderAndDuplicates() {
+		TermBitmap bitmap = TermBitmap.of(new int[] {70000, 3, 3, 1, 70000, 5, 99}, 6);
+		assertEquals(4, bitmap.getCardinality());
+		assertEquals(2, bitmap.andCardinality(TermBitmap.of(new int[] {1, 70000, 100}, 3)));
+	}
+
+	@Test
+	public void readReturnsWrittenBitmap() throws IOException {
+		Random random = new Random(7);
+		Set<Integer> identifiers = randomIdentifiers(random, 0.05d);
+		TermBitmap bitmap = toBitmap(identifiers);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bitmap.write(new DataOutputStream(bytes));
+
+		TermBitmap read = TermBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(identifiers.size(), read.getCardinality());
+		assertEquals(identifiers.size(), read.andCardinality(bitmap));
+	}
+
+	@Test
+	public void readFromBufferReturnsWrittenBitmaps() throws IOException {
+		Random random = new Random(11);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		List<Set<Integer>> written = new ArrayList<>();
+		for(double density : DENSITIES) {
+			Set<Integer> identifiers = randomIdentifiers(random, density);
+			toBitmap(identifiers).write(output);
+			written.add(identifiers);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		for(Set<Integer> identifiers : written) {
+			TermBitmap read = TermBitmap.read(buffer);
+			assertEquals(identifiers.size(), read.getCardinality());
+			assertEquals(identifiers.size(), read.andCardinality(toBitmap(identifiers)));
+		}
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void forEachProvidesIdentifiersInOrder() {
+		Random random = new Random(13);
+		for(double density : DENSITIES) {
+			Set<Integer> identifiers = randomIdentifiers(random, density);
+			List<Integer> provided = new ArrayList<>();
+			toBitmap(identifiers).forEach(provided::add);
+			assertEquals(new ArrayList<>(identifiers), provided, String.format("density %s", density));
+		}
+	}
+
+	@Test
+	public void builderRejectsIdentifiersOutOfOrder() {
+		TermBitmap.Builder builder = new TermBitmap.Builder().add(5);
+		assertThrows(IllegalArgumentException.class, () -> builder.add(5));
+		assertThrows(IllegalArgumentException.class, () -> builder.add(4));
+	}
+
+	/**
+	 * Select each identifier in the first four containers with the given probability.
+	 */
+	private static Set<Integer> randomIdentifiers(Random random, double density) {
+		Set<Integer> identifiers = new TreeSet<>();
+		for(int identifier = 0; identifier < 4 << 16; identifier++) {
+			if(random.nextDouble() < density) {
+				identifiers.add(identifier);
+			}
+		}
+		return identifiers;
+	}
+
+	private static TermBitmap toBitmap(Set<Integer> sortedIdentifiers) {
+		TermBitmap.Builder builder = new TermBitmap.Builder();
+		for(int identifier : sortedIdentifiers) {
+			builder.add(identifier);
+		}
+		return builder.build();
+	}
+}
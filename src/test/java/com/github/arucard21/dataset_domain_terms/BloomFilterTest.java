@@ -0,0 +1,71 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BloomFilterTest {
+	private static final int TERM_COUNT = 100000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void containsEveryAddedTerm() {
+		BloomFilter bloomFilter = BloomFilter.create(TERM_COUNT, 0.01d);
+		for(int i = 0; i < TERM_COUNT; i++) {
+			bloomFilter.add("TERM " + i);
+		}
+		for(int i = 0; i < TERM_COUNT; i++) {
+			assertTrue(bloomFilter.mightContain("TERM " + i), "TERM " + i);
+		}
+	}
+
+	@Test
+	public void falsePositiveRateIsCloseToTheConfiguredRate() {
+		double falsePositiveRate = 0.01d;
+		BloomFilter bloomFilter = BloomFilter.create(TERM_COUNT, falsePositiveRate);
+		for(int i = 0; i < TERM_COUNT; i++) {
+			bloomFilter.add("TERM " + i);
+		}
+		int falsePositives = 0;
+		for(int i = TERM_COUNT; i < 2 * TERM_COUNT; i++) {
+			if(bloomFilter.mightContain("TERM " + i)) {
+				falsePositives++;
+			}
+		}
+		double measuredRate = falsePositives / (double) TERM_COUNT;
+		assertTrue(measuredRate < 2 * falsePositiveRate, "The measured false-positive rate was " + measuredRate);
+	}
+
+	@Test
+	public void readReturnsWrittenFilter() throws IOException {
+		BloomFilter bloomFilter = BloomFilter.create(1000, 0.05d);
+		for(int i = 0; i < 1000; i++) {
+			bloomFilter.add("TERM " + i);
+		}
+		Path bloomFilterPath = directory.resolve("terms.bloom");
+		bloomFilter.write(bloomFilterPath);
+
+		BloomFilter read = BloomFilter.read(bloomFilterPath);
+		assertEquals(bloomFilter.getBitCount(), read.getBitCount());
+		assertEquals(bloomFilter.getHashCount(), read.getHashCount());
+		assertEquals(bloomFilter.getExpectedTermCount(), read.getExpectedTermCount());
+		assertEquals(bloomFilter.getFalsePositiveRate(), read.getFalsePositiveRate(), 0d);
+		for(int i = 0; i < 2000; i++) {
+			assertEquals(bloomFilter.mightContain("TERM " + i), read.mightContain("TERM " + i));
+		}
+	}
+
+	@Test
+	public void createRejectsInvalidFalsePositiveRates() {
+		assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 0d));
+		assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 1d));
+	}
+}
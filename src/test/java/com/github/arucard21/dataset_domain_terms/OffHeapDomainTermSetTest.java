@@ -0,0 +1,81 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OffHeapDomainTermSetTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void growsBeyondTheExpectedTermCount() {
+		OffHeapDomainTermSet terms = OffHeapDomainTermSet.create(1);
+		for(int i = 0; i < 100000; i++) {
+			assertTrue(terms.add("TERM " + i));
+		}
+		assertEquals(100000, terms.size());
+		for(int i = 0; i < 100000; i++) {
+			assertTrue(terms.contains("TERM " + i), "TERM " + i);
+		}
+		assertFalse(terms.contains("TERM 100000"));
+		assertFalse(terms.contains("TERM"));
+	}
+
+	@Test
+	public void addsEachTermOnce() {
+		OffHeapDomainTermSet terms = OffHeapDomainTermSet.create(4);
+		assertTrue(terms.add("A"));
+		assertFalse(terms.add("A"));
+		assertTrue(terms.add("B"));
+		assertEquals(2, terms.size());
+	}
+
+	@Test
+	public void matchesTermsWithMultiByteCharacters() {
+		// Two, three and four bytes in UTF-8, and an unpaired surrogate which is encoded as '?'
+		List<String> added = List.of("", "ÉCOLE", "東京", "😀 SMILE", "\uD800");
+		OffHeapDomainTermSet terms = OffHeapDomainTermSet.create(0);
+		added.forEach(terms::add);
+		for(String term : added) {
+			assertTrue(terms.contains(term), term);
+		}
+		for(String missing : List.of("ECOLE", "東", "東京都", "😁 SMILE", "\uD83D")) {
+			assertFalse(terms.contains(missing), missing);
+		}
+	}
+
+	@Test
+	public void forEachFollowsTheOrderOfAdding() {
+		OffHeapDomainTermSet terms = OffHeapDomainTermSet.create(0);
+		List<String> added = List.of("C", "A", "東京", "B");
+		added.forEach(terms::add);
+		List<String> visited = new ArrayList<>();
+		terms.forEach(visited::add);
+		assertEquals(added, visited);
+	}
+
+	@Test
+	public void copyOfContainsTheSameTerms() throws IOException {
+		List<String> added = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			added.add("TERM " + i);
+		}
+		Path dictionaryPath = directory.resolve("terms.dict");
+		TermDictionary.write(added, dictionaryPath);
+
+		OffHeapDomainTermSet terms = OffHeapDomainTermSet.copyOf(TermDictionary.open(dictionaryPath));
+		assertEquals(added.size(), terms.size());
+		for(String term : added) {
+			assertTrue(terms.contains(term), term);
+		}
+	}
+}
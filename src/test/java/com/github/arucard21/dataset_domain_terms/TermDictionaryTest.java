@@ -0,0 +1,90 @@
+package com.github.arucard21.dataset_domain_terms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TermDictionaryTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void containsExactlyTheWrittenTerms() throws IOException {
+		// Shared prefixes, several blocks, multi-byte characters and the empty term
+		List<String> terms = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			terms.add("TERM " + i);
+		}
+		terms.addAll(List.of("", "ÉCOLE", "東京", "TERM 1", "😀"));
+		Path dictionaryPath = directory.resolve("terms.dict");
+
+		assertEquals(1004, TermDictionary.write(terms, dictionaryPath));
+		TermDictionary dictionary = TermDictionary.open(dictionaryPath);
+		assertEquals(1004, dictionary.size());
+		for(String term : terms) {
+			assertTrue(dictionary.contains(term), term);
+		}
+		for(String missing : List.of("TERM", "TERM 1000", "TERM 10 ", "term 1", "ÉCOL", "東京都", "ZZZ")) {
+			assertFalse(dictionary.contains(missing), missing);
+		}
+	}
+
+	@Test
+	public void ordinalsFollowTheOrderOfTheUtf8Bytes() throws IOException {
+		Set<String> terms = new TreeSet<>(List.of("b", "a", "é", "z", "ab", "aa"));
+		Path dictionaryPath = directory.resolve("terms.dict");
+		TermDictionary.write(terms, dictionaryPath);
+		TermDictionary dictionary = TermDictionary.open(dictionaryPath);
+
+		List<String> inOrder = new ArrayList<>();
+		dictionary.forEach(inOrder::add);
+		// "é" is encoded as 0xC3 0xA9, which sorts after every ASCII character
+		assertEquals(List.of("a", "aa", "ab", "b", "z", "é"), inOrder);
+		for(int ordinal = 0; ordinal < inOrder.size(); ordinal++) {
+			assertEquals(ordinal, dictionary.ordinalOf(inOrder.get(ordinal).getBytes(StandardCharsets.UTF_8)));
+		}
+		assertEquals(-1, dictionary.ordinalOf("c".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void writeRejectsUnsortedTerms() {
+		Iterator<byte[]> unsorted = List.of("b".getBytes(StandardCharsets.UTF_8), "a".getBytes(StandardCharsets.UTF_8)).iterator();
+		assertThrows(IllegalArgumentException.class, () -> TermDictionary.write(unsorted, directory.resolve("terms.dict")));
+	}
+
+	@Test
+	public void emptyDictionaryContainsNothing() throws IOException {
+		Path dictionaryPath = directory.resolve("terms.dict");
+		TermDictionary.write(List.of(), dictionaryPath);
+		TermDictionary dictionary = TermDictionary.open(dictionaryPath);
+		assertEquals(0, dictionary.size());
+		assertFalse(dictionary.contains(""));
+		dictionary.forEach(term -> {
+			throw new AssertionError("Unexpected term " + term);
+		});
+	}
+
+	@Test
+	public void openRejectsOtherFiles() throws IOException {
+		Path otherPath = directory.resolve("other.txt");
+		byte[] content = new byte[64];
+		Arrays.fill(content, (byte) 'x');
+		Files.write(otherPath, content);
+		assertThrows(IOException.class, () -> TermDictionary.open(otherPath));
+	}
+}
@@ -0,0 +1,150 @@
+package com.github.arucard21.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StageOutputsTest {
+	private static final String STAGE_NAME = "test-stage";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void writtenOutputIsCompleteForTheSameParameters() throws IOException {
+		Path output = directory.resolve("output.txt");
+		StageOutputs.writeOutput(output, STAGE_NAME, "first", outputPath -> Files.writeString(outputPath, "content"));
+
+		assertEquals("content", Files.readString(output));
+		assertNotNull(StageOutputs.readManifest(output));
+		assertTrue(StageOutputs.isComplete(output, STAGE_NAME, "first"));
+		assertEquals(List.of("output.txt", "output.txt" + StageOutputs.MANIFEST_SUFFIX), list(directory));
+	}
+
+	@Test
+	public void outputWithOtherParametersIsRemoved() throws IOException {
+		Path output = directory.resolve("output.txt");
+		StageOutputs.writeOutput(output, STAGE_NAME, "first", outputPath -> Files.writeString(outputPath, "content"));
+
+		assertFalse(StageOutputs.isComplete(output, STAGE_NAME, "second"));
+		assertFalse(Files.exists(output));
+		assertFalse(Files.exists(StageOutputs.getManifestPath(output)));
+	}
+
+	@Test
+	public void changedOutputIsRemoved() throws IOException {
+		Path output = directory.resolve("output.txt");
+		StageOutputs.writeOutput(output, STAGE_NAME, "first", outputPath -> Files.writeString(outputPath, "content"));
+		Files.writeString(output, "cut");
+
+		assertFalse(StageOutputs.isComplete(output, STAGE_NAME, "first"));
+		assertFalse(Files.exists(output));
+	}
+
+	@Test
+	public void failedStageLeavesNothingBehind() throws IOException {
+		Path output = directory.resolve("output.txt");
+		assertThrows(IOException.class, () -> StageOutputs.writeOutput(output, STAGE_NAME, "first", outputPath -> {
+			Files.writeString(outputPath, "partial content");
+			throw new IOException("The stage failed");
+		}));
+		assertEquals(List.of(), list(directory));
+	}
+
+	@Test
+	public void writeMovesAllOutputsOfTheStage() throws IOException, InterruptedException {
+		StageOutputs.write(directory, List.of("first.txt", "second"), STAGE_NAME, "parameters", targetDirectory -> {
+			Files.writeString(targetDirectory.resolve("first.txt"), "first");
+			Files.createDirectories(targetDirectory.resolve("second"));
+			Files.writeString(targetDirectory.resolve("second").resolve("nested.txt"), "nested");
+		});
+
+		assertTrue(StageOutputs.areComplete(directory, List.of("first.txt", "second"), STAGE_NAME, "parameters"));
+		assertEquals("nested", Files.readString(directory.resolve("second").resolve("nested.txt")));
+		Files.delete(directory.resolve("first.txt"));
+		assertFalse(StageOutputs.areComplete(directory, List.of("first.txt", "second"), STAGE_NAME, "parameters"));
+		assertFalse(Files.exists(directory.resolve("second")));
+	}
+
+	@Test
+	public void onlyPartialDirectoriesOfEarlierRunsAreRemoved() throws IOException {
+		Path abandoned = Files.createDirectories(directory.resolve(StageOutputs.PARTIAL_PREFIX + STAGE_NAME + "-abandoned"));
+		Files.writeString(abandoned.resolve("output.txt"), "abandoned");
+		Path inUse = Files.createDirectories(directory.resolve(StageOutputs.PARTIAL_PREFIX + STAGE_NAME + "-in-use"));
+		Path lockPath = StageOutputs.getLockPath(inUse);
+		try(FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				FileLock lock = lockChannel.lock()){
+			StageOutputs.writeOutput(directory.resolve("output.txt"), STAGE_NAME, "first", outputPath -> Files.writeString(outputPath, "content"));
+
+			assertTrue(lock.isValid());
+			assertFalse(Files.exists(abandoned));
+			assertTrue(Files.exists(inUse));
+			assertTrue(Files.exists(lockPath));
+		}
+	}
+
+	@Test
+	public void readableOutputWithoutManifestIsTrusted() throws IOException {
+		Path output = directory.resolve("output.json");
+		Files.writeString(output, "{\"matched\": 1}");
+
+		assertTrue(StageOutputs.isComplete(output, STAGE_NAME, "first"));
+		assertNotNull(StageOutputs.readManifest(output));
+	}
+
+	@Test
+	public void truncatedOutputWithoutManifestIsRemoved() throws IOException {
+		Path output = directory.resolve("output.txt.gz");
+		byte[] content = "term\n".repeat(10000).getBytes(StandardCharsets.UTF_8);
+		try(OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(output))){
+			outputStream.write(content);
+		}
+		byte[] compressed = Files.readAllBytes(output);
+		Files.write(output, Arrays.copyOf(compressed, compressed.length / 2));
+
+		assertFalse(StageOutputs.isComplete(output, STAGE_NAME, "first"));
+		assertFalse(Files.exists(output));
+	}
+
+	@Test
+	public void emptyOutputWithoutManifestIsRemoved() throws IOException {
+		Path output = directory.resolve("output.txt");
+		Files.createFile(output);
+
+		assertFalse(StageOutputs.isComplete(output, STAGE_NAME, "first"));
+		assertFalse(Files.exists(output));
+	}
+
+	@Test
+	public void fingerprintOfAWrittenOutputIsItsChecksum() throws IOException {
+		Path output = directory.resolve("output.txt");
+		StageOutputs.writeOutput(output, STAGE_NAME, "first", outputPath -> Files.writeString(outputPath, "content"));
+
+		assertEquals(StageOutputs.readManifest(output).getChecksum(), StageOutputs.fingerprint(output));
+	}
+
+	private static List<String> list(Path directory) throws IOException {
+		try(Stream<Path> files = Files.list(directory)){
+			return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -1,10 +0,0 @@
-package domain.similarity;
-
-import org.junit.jupiter.api.Test;
-
-class DomainSimilarityTest {
-    @Test
-    public void test() {
-        // TODO
-    }
-}